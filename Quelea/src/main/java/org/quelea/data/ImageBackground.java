@@ -20,7 +20,6 @@ package org.quelea.data;
 
 import java.io.File;
 import java.io.Serializable;
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -46,46 +45,47 @@ import org.quelea.services.utils.Utils;
 public class ImageBackground implements Background, Serializable {
 
     private final String imageName;
-    private transient SoftReference<Image> originalImage;
 
     /**
-     * Create a new background that's a certain image.
+     * Create a new background that's a certain image. The image starts
+     * decoding in the background straight away, so it's likely to be ready
+     * by the time it's shown.
      * <p/>
      * @param imageName the name of the background image in the user img folder.
      */
     public ImageBackground(String imageName) {
         this.imageName = imageName;
-        initImage();
+        String uri = getImageURI();
+        if(uri != null) {
+            ImageManager.INSTANCE.getImageAsync(uri);
+        }
     }
 
-    private Image initImage() {
+    /**
+     * Get the URI of the background image.
+     * <p>
+     * @return the URI of the image, or null if there's no image.
+     */
+    private String getImageURI() {
         File f = new File(QueleaProperties.get().getImageDir(), imageName);
-        Image img;
         if(f.exists() && !imageName.trim().isEmpty()) {
-            img = ImageManager.INSTANCE.getImage(f.toURI().toString());
-            originalImage = new SoftReference<>(img);
+            return f.toURI().toString();
         }
-        else {
-            img = Utils.getImageFromColour(Color.BLACK);
-            originalImage = new SoftReference<>(img);
-        }
-        return img;
+        return null;
     }
 
     /**
-     * Get the background image.
+     * Get the background image. This comes from the image manager's cache,
+     * so it's only decoded again if it's been dropped from there.
      * <p>
      * @return the background image.
      */
     public Image getImage() {
-        Image img = null;
-        if(originalImage != null) {
-            img = originalImage.get();
-        }
-        if(img == null) {
-            img = initImage();
+        String uri = getImageURI();
+        if(uri == null) {
+            return Utils.getImageFromColour(Color.BLACK);
         }
-        return img;
+        return ImageManager.INSTANCE.getImage(uri);
     }
 
     /**
@@ -134,7 +134,6 @@ public class ImageBackground implements Background, Serializable {
     public int hashCode() {
         int hash = 5;
         hash = 71 * hash + Objects.hashCode(this.imageName);
-        hash = 71 * hash + Objects.hashCode(this.originalImage);
         return hash;
     }
 
@@ -150,9 +149,6 @@ public class ImageBackground implements Background, Serializable {
         if(!Objects.equals(this.imageName, other.imageName)) {
             return false;
         }
-        if(!Objects.equals(this.originalImage, other.originalImage)) {
-            return false;
-        }
         return true;
     }
 }
@@ -18,30 +18,25 @@
 package org.quelea.data.bible;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.javafx.dialog.Dialog;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.BibleUploader;
 import org.quelea.services.utils.LoggerUtils;
-import org.quelea.services.utils.UnicodeReader;
 import org.quelea.services.utils.Utils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
  * A bible containing a number of books as well as some information.
@@ -55,16 +50,68 @@ public final class Bible implements BibleInterface, Serializable {
     private BibleInfo information;
     private final List<BibleBook> books;
     private String filePath;
+    private transient Supplier<List<BibleBook>> bookLoader;
+    private transient boolean loaded;
+    private transient String cacheKey;
     
     /**
      * Create a new bible.
      * <p/>
      * @param name the name of the bible.
      */
-    private Bible(String name) {
+    Bible(String name) {
         books = new ArrayList<>();
         this.name = name;
     }
+
+    /**
+     * Create a new bible whose books are only loaded when they're first
+     * needed.
+     * <p/>
+     * @param name the name of the bible.
+     * @param cacheKey the key of the bible in the bible cache.
+     * @param bookLoader loads the books in the bible.
+     */
+    Bible(String name, String cacheKey, Supplier<List<BibleBook>> bookLoader) {
+        this(name);
+        this.cacheKey = cacheKey;
+        this.bookLoader = bookLoader;
+    }
+
+    /**
+     * Get the books in this bible, loading them first if they haven't been
+     * loaded yet.
+     */
+    private List<BibleBook> getBookList() {
+        if (bookLoader != null) {
+            synchronized (this) {
+                if (!loaded) {
+                    for (BibleBook book : bookLoader.get()) {
+                        book.setBible(this);
+                        books.add(book);
+                    }
+                    loaded = true;
+                    LOGGER.log(Level.INFO, "Loaded bible: {0}. Contains {1} books.", new Object[]{name, books.size()});
+                }
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Get the key this bible is stored under in the compiled bible cache. This
+     * identifies the exact contents of the bible.
+     * <p/>
+     * @return the cache key, or null if the bible isn't cached.
+     */
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getBookList();
+        out.defaultWriteObject();
+    }
     
     /**
      * @return the path of the file this bible has been read from on null if n.a.
@@ -79,15 +126,18 @@ public final class Bible implements BibleInterface, Serializable {
 
     @Override
     public int hashCode() {
+        //Books left out so hashing doesn't have to load every verse
         int hash = 5;
         hash = 19 * hash + Objects.hashCode(this.name);
         hash = 19 * hash + Objects.hashCode(this.information);
-        hash = 19 * hash + Objects.hashCode(this.books);
         return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
@@ -101,14 +151,16 @@ public final class Bible implements BibleInterface, Serializable {
         if (!Objects.equals(this.information, other.information)) {
             return false;
         }
-        if (!Objects.equals(this.books, other.books)) {
+        if (!Objects.equals(getBookList(), other.getBookList())) {
             return false;
         }
         return true;
     }
     
     /**
-     * Parse a bible from a specified bible and return it as an object.
+     * Parse a bible from a specified bible and return it as an object. The
+     * bible is loaded from the compiled bible cache if it's been parsed
+     * before, otherwise it's parsed and added to the cache.
      * <p/>
      * @param file the file where the XML bible is stored.
      * @return the bible as a java object, or null if an error occurred.
@@ -116,23 +168,12 @@ public final class Bible implements BibleInterface, Serializable {
     public static Bible parseBible(final File file) {
         try {
             if (file.exists()) {
-                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-                DocumentBuilder builder = factory.newDocumentBuilder();
-                Document doc = builder.parse(new InputSource(new UnicodeReader(new FileInputStream(file), "UTF-8")));
-                NodeList list = doc.getChildNodes();
-                for (int i = 0; i < list.getLength(); i++) {
-                    if (list.item(i).getNodeName().equalsIgnoreCase("xmlbible")
-                            || list.item(i).getNodeName().equalsIgnoreCase("bible")) {
-                        return parseXML(list.item(i), Utils.getFileNameWithoutExtension(file.getName()));
-                    }
-                }
-                LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because I couldn''t find any <bible> or <xmlbible> root tags :-(", file);
-                return null;
+                return BibleCache.load(file);
             } else {
                 LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because the file doesn''t exist!", file);
                 return null;
             }
-        } catch (ParserConfigurationException | SAXException | IOException ex) {
+        } catch (XMLStreamException | IOException ex) {
             LOGGER.log(Level.WARNING, "Couldn't parse the bible " + file, ex);
             Platform.runLater(new Runnable() {
                 @Override
@@ -197,13 +238,23 @@ public final class Bible implements BibleInterface, Serializable {
         if (information != null) {
             ret.append(information.toXML());
         }
-        for (BibleBook book : books) {
+        for (BibleBook book : getBookList()) {
             ret.append(book.toXML());
         }
         ret.append("</xmlbible>");
         return ret.toString();
     }
 
+    /**
+     * Set the general information about this bible.
+     * <p/>
+     * @param information the bibleinfo object providing general information
+     * about the bible.
+     */
+    void setInformation(BibleInfo information) {
+        this.information = information;
+    }
+
     /**
      * Get general information about this bible.
      * <p/>
@@ -244,7 +295,10 @@ public final class Bible implements BibleInterface, Serializable {
      * @param book the book to add.
      */
     public void addBook(BibleBook book) {
-        books.add(book);
+        List<BibleBook> bookList = getBookList();
+        synchronized (this) {
+            bookList.add(book);
+        }
     }
 
     /**
@@ -253,7 +307,10 @@ public final class Bible implements BibleInterface, Serializable {
      * @return all the books in the bible.
      */
     public BibleBook[] getBooks() {
-        return books.toArray(new BibleBook[books.size()]);
+        List<BibleBook> bookList = getBookList();
+        synchronized (this) {
+            return bookList.toArray(new BibleBook[bookList.size()]);
+        }
     }
 
     @Override
@@ -48,12 +48,26 @@ public final class BibleBook implements BibleInterface, Serializable {
         caretPosList = new ArrayList<>();
     }
 
+    /**
+     * Create a new book with the given details.
+     *
+     * @param bookNumber the number of the book.
+     * @param bookName the name of the book.
+     * @param bsname the short name of the book.
+     */
+    BibleBook(int bookNumber, String bookName, String bsname) {
+        this();
+        this.bookNumber = bookNumber;
+        this.bookName = bookName;
+        this.bsname = bsname;
+    }
+
     @Override
     public int hashCode() {
+        //Chapters left out so hashing doesn't have to load every verse
         int hash = 7;
         hash = 43 * hash + this.bookNumber;
         hash = 43 * hash + Objects.hashCode(this.bookName);
-        hash = 43 * hash + Objects.hashCode(this.chapters);
         return hash;
     }
 
@@ -0,0 +1,468 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.bible;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLStreamException;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.Utils;
+
+/**
+ * A cache of bibles compiled into a compact binary form, so they don't have
+ * to be parsed from XML every time Quelea starts.
+ * <p/>
+ * Each bible is cached in its own file, named after the name, size and
+ * modification time of the XML file it was compiled from (as compiled
+ * dictionaries are) so a changed bible is recompiled without the XML having to
+ * be read at startup. A hash of the XML is stored in the cache file as the
+ * bible's cache key. When the name doesn't match, because the file has just
+ * been installed or touched, the XML is hashed instead and any cache file
+ * already compiled from the same contents is reused. Only the name and
+ * information of each bible are read up front. The books and chapters are
+ * read from the memory mapped file the first time the bible is used, and
+ * the verses of each chapter the first time that chapter is used.
+ * <p/>
+ * The verses of only so many chapters are kept loaded, least recently used
+ * chapters across all the bibles being unloaded once they take up more than
+ * a set amount of memory, so rarely used translations don't take up memory.
+ * The books and chapters themselves stay loaded (they're small, and other
+ * parts of Quelea hold on to them) and just read their verses again from
+ * the cache when they're next needed.
+ * <p/>
+ * @author Michael
+ */
+final class BibleCache {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAGIC = 0x51424942;
+    private static final int VERSION = 2;
+    private static final String EXTENSION = ".qbc";
+    private static final long MAX_LOADED_SIZE = 48L * 1024 * 1024;
+    private static final Set<String> USED_FILES = ConcurrentHashMap.newKeySet();
+    private static final Map<Integer, LoadedChapter> LOADED_CHAPTERS = new LinkedHashMap<>(16, 0.75f, true);
+    private static long loadedSize;
+
+    /**
+     * Don't make me...
+     */
+    private BibleCache() {
+        throw new AssertionError();
+    }
+
+    /**
+     * Load the bible in the given file, from the cache if it's been compiled
+     * before, otherwise by parsing it and compiling it into the cache.
+     * <p/>
+     * @param file the file where the XML bible is stored.
+     * @return the bible, or null if the file doesn't contain a bible.
+     * @throws IOException if the file couldn't be read.
+     * @throws XMLStreamException if the file isn't valid XML.
+     */
+    static Bible load(File file) throws IOException, XMLStreamException {
+        String prefix = file.getName() + "-";
+        File cacheDir = QueleaProperties.get().getBibleCacheDir();
+        File cacheFile = new File(cacheDir, prefix + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified()) + EXTENSION);
+        USED_FILES.add(cacheFile.getName());
+        String defaultName = Utils.getFileNameWithoutExtension(file.getName());
+        if (cacheFile.exists()) {
+            try {
+                Bible bible = read(cacheFile, defaultName);
+                LOGGER.log(Level.INFO, "Found cached bible: {0}", bible.getName());
+                return bible;
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't read cached bible " + cacheFile + ", parsing it again", ex);
+            }
+        }
+        String key = hash(file);
+        File existing = findCacheFile(cacheDir, key);
+        if (existing != null) {
+            try {
+                Files.copy(existing.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                removeStale(cacheDir, prefix, cacheFile);
+                Bible bible = read(cacheFile, defaultName);
+                LOGGER.log(Level.INFO, "Found cached bible with the same contents: {0}", bible.getName());
+                return bible;
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't reuse cached bible " + existing + ", parsing it again", ex);
+            }
+        }
+        Bible bible = BibleParser.parse(file);
+        if (bible != null) {
+            try {
+                write(bible, key, defaultName, cacheFile);
+                removeStale(cacheDir, prefix, cacheFile);
+                //Use the cached copy so this bible's chapters can be unloaded like the others
+                return read(cacheFile, defaultName);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't write bible to cache " + cacheFile, ex);
+            }
+        }
+        return bible;
+    }
+
+    /**
+     * Delete the files cached from earlier versions of a bible file.
+     */
+    private static void removeStale(File cacheDir, String prefix, File cacheFile) {
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(prefix) && !file.equals(cacheFile)) {
+                    USED_FILES.remove(file.getName());
+                    if (!file.delete()) {
+                        LOGGER.log(Level.FINE, "Couldn''t delete {0}, it may still be open", file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find a cache file compiled from a bible with the given hash.
+     * <p/>
+     * @return the cache file, or null if there isn't one.
+     */
+    private static File findCacheFile(File cacheDir, String key) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return null;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                        in.readInt();
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        if (key.equals(new String(bytes, StandardCharsets.UTF_8))) {
+                            return file;
+                        }
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.log(Level.FINE, "Couldn''t read cached bible {0}", file);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record that the verses of a cached chapter have been loaded, unloading
+     * the least recently used chapters if too much is now loaded.
+     * <p/>
+     * @param chapter the chapter that's been loaded.
+     * @param size the rough number of bytes its verses take up.
+     */
+    static void loaded(BibleChapter chapter, long size) {
+        List<BibleChapter> evicted = new ArrayList<>();
+        synchronized (LOADED_CHAPTERS) {
+            LoadedChapter old = LOADED_CHAPTERS.put(chapter.getID(), new LoadedChapter(chapter, size));
+            if (old != null) {
+                loadedSize -= old.size;
+            }
+            loadedSize += size;
+            Iterator<LoadedChapter> it = LOADED_CHAPTERS.values().iterator();
+            while (loadedSize > MAX_LOADED_SIZE && it.hasNext()) {
+                LoadedChapter eldest = it.next();
+                if (eldest.chapter == chapter) {
+                    break;
+                }
+                loadedSize -= eldest.size;
+                evicted.add(eldest.chapter);
+                it.remove();
+            }
+        }
+        for (BibleChapter evictedChapter : evicted) {
+            evictedChapter.unload();
+        }
+    }
+
+    /**
+     * Record that the verses of a cached chapter have been used, so it's
+     * kept loaded over chapters that haven't been used for longer.
+     * <p/>
+     * @param chapter the chapter that's been used.
+     */
+    static void used(BibleChapter chapter) {
+        synchronized (LOADED_CHAPTERS) {
+            LOADED_CHAPTERS.get(chapter.getID());
+        }
+    }
+
+    /**
+     * Get roughly how many bytes of memory a loaded verse takes up.
+     * <p/>
+     * @param verse the verse.
+     * @return its rough size in bytes.
+     */
+    static long getSize(BibleVerse verse) {
+        return 64 + 2L * verse.getVerseText().length();
+    }
+
+    /**
+     * Delete any cached bibles that haven't been loaded since Quelea started,
+     * since their XML files have changed or been removed.
+     */
+    static void removeUnused() {
+        File[] files = QueleaProperties.get().getBibleCacheDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION) && !USED_FILES.contains(name)) {
+                LOGGER.log(Level.INFO, "Removing unused cached bible {0}", file);
+                if (!file.delete()) {
+                    LOGGER.log(Level.FINE, "Couldn''t delete {0}, it may still be open", file);
+                }
+            }
+        }
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("SHA-1 not available", ex);
+        }
+        byte[] buf = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buf)) != -1) {
+                digest.update(buf, 0, read);
+            }
+        }
+        StringBuilder ret = new StringBuilder();
+        for (byte b : digest.digest()) {
+            ret.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Write a bible to the cache. The file starts with the hash it's keyed on
+     * and the books and chapters, and each chapter records where its verses
+     * are in the text that follows.
+     */
+    private static void write(Bible bible, String key, String defaultName, File cacheFile) throws IOException {
+        ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream textBytes = new ByteArrayOutputStream();
+        DataOutputStream meta = new DataOutputStream(metaBytes);
+        DataOutputStream text = new DataOutputStream(textBytes);
+        writeString(meta, key);
+        boolean defaultNamed = bible.getName().equals(defaultName);
+        meta.writeBoolean(defaultNamed);
+        if (!defaultNamed) {
+            writeString(meta, bible.getName());
+        }
+        BibleInfo info = bible.getInformation();
+        meta.writeBoolean(info != null);
+        if (info != null) {
+            meta.writeInt(info.getAtributes().size());
+            for (Map.Entry<String, String> attribute : info.getAtributes()) {
+                writeString(meta, attribute.getKey());
+                writeString(meta, attribute.getValue());
+            }
+        }
+        BibleBook[] books = bible.getBooks();
+        meta.writeInt(books.length);
+        for (BibleBook book : books) {
+            meta.writeInt(book.getBookNumber());
+            writeString(meta, book.getBookName());
+            writeString(meta, book.getBSName());
+            BibleChapter[] chapters = book.getChapters();
+            meta.writeInt(chapters.length);
+            for (BibleChapter chapter : chapters) {
+                BibleVerse[] verses = chapter.getVerses();
+                meta.writeInt(chapter.getNum());
+                meta.writeInt(verses.length);
+                meta.writeInt(text.size());
+                for (BibleVerse verse : verses) {
+                    text.writeInt(verse.getNum());
+                    writeString(text, verse.getVerseText());
+                }
+            }
+        }
+        meta.flush();
+        text.flush();
+
+        File dir = cacheFile.getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File temp = File.createTempFile("bible", ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(metaBytes.size());
+                metaBytes.writeTo(out);
+                textBytes.writeTo(out);
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Read the name and information of a bible from the cache, leaving the
+     * books to be read when the bible is first used.
+     */
+    private static Bible read(final File cacheFile, String defaultName) throws IOException {
+        ByteBuffer buffer = map(cacheFile);
+        String key = readString(buffer);
+        Bible bible = new Bible(readName(buffer, defaultName), key, () -> readBooks(cacheFile));
+        BibleInfo info = readInfo(buffer);
+        if (info != null) {
+            bible.setInformation(info);
+        }
+        return bible;
+    }
+
+    /**
+     * Read the books and chapters of a bible from the cache, leaving the
+     * verses to be read when their chapters are first used.
+     */
+    private static List<BibleBook> readBooks(File cacheFile) {
+        ByteBuffer buffer;
+        try {
+            buffer = map(cacheFile);
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't read cached bible " + cacheFile, ex);
+            return new ArrayList<>();
+        }
+        final ByteBuffer textBuffer = ((ByteBuffer) buffer.duplicate().position(buffer.position() + buffer.getInt(8))).slice();
+        readString(buffer);
+        readName(buffer, null);
+        readInfo(buffer);
+        int bookCount = buffer.getInt();
+        List<BibleBook> ret = new ArrayList<>(bookCount);
+        for (int i = 0; i < bookCount; i++) {
+            BibleBook book = new BibleBook(buffer.getInt(), readString(buffer), readString(buffer));
+            int chapterCount = buffer.getInt();
+            for (int j = 0; j < chapterCount; j++) {
+                int num = buffer.getInt();
+                final int verseCount = buffer.getInt();
+                final int offset = buffer.getInt();
+                BibleChapter chapter = new BibleChapter(num, () -> readVerses(textBuffer, offset, verseCount));
+                chapter.setBook(book);
+                book.addChapter(chapter);
+            }
+            ret.add(book);
+        }
+        return ret;
+    }
+
+    /**
+     * Map a cache file, leaving the buffer positioned at the start of the
+     * bible after the header.
+     */
+    private static ByteBuffer map(File cacheFile) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a bible cache file, or an old version");
+        }
+        buffer.getInt();
+        return buffer;
+    }
+
+    private static String readName(ByteBuffer buffer, String defaultName) {
+        return buffer.get() != 0 ? defaultName : readString(buffer);
+    }
+
+    private static BibleInfo readInfo(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        BibleInfo info = new BibleInfo();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            info.putAttribute(readString(buffer), readString(buffer));
+        }
+        return info;
+    }
+
+    private static List<BibleVerse> readVerses(ByteBuffer textBuffer, int offset, int count) {
+        ByteBuffer buffer = textBuffer.duplicate();
+        buffer.position(offset);
+        List<BibleVerse> ret = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ret.add(new BibleVerse(buffer.getInt(), readString(buffer)));
+        }
+        return ret;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A chapter whose verses are loaded, and how much memory they take up.
+     */
+    private static final class LoadedChapter {
+
+        private final BibleChapter chapter;
+        private final long size;
+
+        private LoadedChapter(BibleChapter chapter, long size) {
+            this.chapter = chapter;
+            this.size = size;
+        }
+    }
+}
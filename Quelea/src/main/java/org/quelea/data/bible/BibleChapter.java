@@ -17,11 +17,16 @@
  */
 package org.quelea.data.bible;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.ref.SoftReference;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import org.quelea.services.utils.Utils;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -33,28 +38,91 @@ import org.w3c.dom.NodeList;
  */
 public final class BibleChapter implements BibleInterface, Serializable {
 
-    private static int statId = 0;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
     private final int num;
-    private final Map<Integer, BibleVerse> verses;
+    private Map<Integer, BibleVerse> verses;
     private transient SoftReference<String> softRefText;
-    private final int id = statId++;
+    private final int id = NEXT_ID.getAndIncrement();
     private BibleBook book;
+    private transient Supplier<List<BibleVerse>> verseLoader;
+    private transient boolean versesLoaded;
 
     /**
      * Create a new bible chapter.
      * <p/>
      * @param num the chapter number (or -1 if it's unknown.)
      */
-    private BibleChapter(int num) {
+    BibleChapter(int num) {
         this.num = num;
         verses = new HashMap<>();
     }
 
+    /**
+     * Create a new bible chapter whose verses are only loaded the first time
+     * they're needed, and can be unloaded again to free up memory.
+     * <p/>
+     * @param num the chapter number (or -1 if it's unknown.)
+     * @param verseLoader loads the verses in the chapter.
+     */
+    BibleChapter(int num, Supplier<List<BibleVerse>> verseLoader) {
+        this(num);
+        this.verseLoader = verseLoader;
+    }
+
+    /**
+     * Get the verses in this chapter, loading them first if they haven't been
+     * loaded yet.
+     */
+    private Map<Integer, BibleVerse> getVerseMap() {
+        if (verseLoader == null) {
+            return verses;
+        }
+        Map<Integer, BibleVerse> ret;
+        long size = -1;
+        synchronized (this) {
+            if (!versesLoaded) {
+                Map<Integer, BibleVerse> loaded = new HashMap<>();
+                size = 0;
+                for (BibleVerse verse : verseLoader.get()) {
+                    verse.setChapter(this);
+                    loaded.put(verse.getNum(), verse);
+                    size += BibleCache.getSize(verse);
+                }
+                verses = loaded;
+                versesLoaded = true;
+            }
+            ret = verses;
+        }
+        if (size >= 0) {
+            BibleCache.loaded(this, size);
+        }
+        else {
+            BibleCache.used(this);
+        }
+        return ret;
+    }
+
+    /**
+     * Free the verses in this chapter, if they can be loaded again later.
+     * Anything still holding on to the old verses can carry on using them.
+     */
+    synchronized void unload() {
+        if (verseLoader != null && versesLoaded) {
+            verses = new HashMap<>();
+            versesLoaded = false;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getVerseMap();
+        out.defaultWriteObject();
+    }
+
     @Override
     public int hashCode() {
         int hash = 3;
         hash = 67 * hash + this.num;
-        hash = 67 * hash + Objects.hashCode(this.verses);
+        hash = 67 * hash + Objects.hashCode(getVerseMap());
         return hash;
     }
 
@@ -70,7 +138,7 @@ public final class BibleChapter implements BibleInterface, Serializable {
         if (this.num != other.num) {
             return false;
         }
-        if (!Objects.equals(this.verses, other.verses)) {
+        if (!Objects.equals(getVerseMap(), other.getVerseMap())) {
             return false;
         }
         return true;
@@ -148,7 +216,7 @@ public final class BibleChapter implements BibleInterface, Serializable {
             ret.append('\"');
         }
         ret.append(">");
-        for (BibleVerse verse : verses.values()) {
+        for (BibleVerse verse : getVerseMap().values()) {
             ret.append(Utils.escapeXML(verse.toXML()));
         }
         ret.append("</chapter>");
@@ -170,8 +238,8 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * <p/>
      * @param verse the verse to add.
      */
-    private void addVerse(BibleVerse verse) {
-        verses.put(verse.getNum(), verse);
+    void addVerse(BibleVerse verse) {
+        getVerseMap().put(verse.getNum(), verse);
     }
 
     /**
@@ -180,7 +248,8 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * @return all the verses in the chapter.
      */
     public BibleVerse[] getVerses() {
-        return verses.values().toArray(new BibleVerse[verses.size()]);
+        Map<Integer, BibleVerse> verseMap = getVerseMap();
+        return verseMap.values().toArray(new BibleVerse[verseMap.size()]);
     }
 
     /**
@@ -190,7 +259,7 @@ public final class BibleChapter implements BibleInterface, Serializable {
      * @return the verse at the specified number, or null if it doesn't exist.
      */
     public BibleVerse getVerse(int i) {
-        return verses.get(i);
+        return getVerseMap().get(i);
     }
 
     /**
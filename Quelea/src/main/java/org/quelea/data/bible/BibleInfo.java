@@ -49,7 +49,7 @@ public class BibleInfo implements Serializable {
     /**
      * For internal use only.
      */
-    private BibleInfo() {
+    BibleInfo() {
         attributes = new HashMap<>();
     }
 
@@ -19,14 +19,12 @@ package org.quelea.data.bible;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.lucene.BibleSearchIndex;
-import org.quelea.services.lucene.SearchIndex;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.services.utils.Utils;
@@ -44,7 +42,7 @@ public final class BibleManager {
     private static final BibleManager INSTANCE = new BibleManager();
     private final List<Bible> bibles;
     private final List<BibleChangeListener> listeners;
-    private final SearchIndex<BibleChapter> index;
+    private final BibleSearchIndex index;
     private boolean indexInit;
     private final List<Runnable> onIndexInit;
 
@@ -125,7 +123,7 @@ public final class BibleManager {
      * <p/>
      * @return the search index.
      */
-    public SearchIndex<BibleChapter> getIndex() {
+    public BibleSearchIndex getIndex() {
         return index;
     }
     
@@ -170,6 +168,7 @@ public final class BibleManager {
                 }
             }
         }
+        BibleCache.removeUnused();
         if(updateIndex) {
             buildIndex();
         }
@@ -200,20 +199,12 @@ public final class BibleManager {
                 }
             });
         }
+        final List<Bible> indexBibles = new ArrayList<>(bibles);
         new Thread() {
             @Override
             public void run() {
                 LOGGER.log(Level.INFO, "Adding bibles to index");
-                List<BibleChapter> chapters = new ArrayList<>(bibles.size() * 66);
-                for(Bible bible : bibles) {
-                    LOGGER.log(Level.FINE, "Adding {0} bible to index", bible.getName());
-                    index.clear();
-                    for(BibleBook book : bible.getBooks()) {
-                        chapters.addAll(Arrays.asList(book.getChapters()));
-                    }
-                    LOGGER.log(Level.FINE, "Added {0}.", bible.getName());
-                }
-                index.addAll(chapters);
+                index.load(indexBibles);
                 LOGGER.log(Level.INFO, "Finished Adding bibles to index");
                 indexInit = true;
                 for(Runnable r : onIndexInit) {
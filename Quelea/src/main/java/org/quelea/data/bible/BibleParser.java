@@ -0,0 +1,286 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.bible;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.UnicodeReader;
+import org.quelea.services.utils.Utils;
+
+/**
+ * Parses Zefania and similar XML bibles a piece at a time, rather than
+ * reading the whole document into memory before building the bible from it.
+ * The result is the same as parsing the DOM with Bible.parseXML().
+ * <p/>
+ * @author Michael
+ */
+final class BibleParser {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final XMLStreamReader reader;
+
+    private BibleParser(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Parse the bible in the given file.
+     * <p/>
+     * @param file the file where the XML bible is stored.
+     * @return the bible, or null if the file doesn't contain a bible.
+     * @throws IOException if the file couldn't be read.
+     * @throws XMLStreamException if the file isn't valid XML.
+     */
+    static Bible parse(File file) throws IOException, XMLStreamException {
+        try (Reader in = new UnicodeReader(new FileInputStream(file), "UTF-8")) {
+            XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        if (reader.getLocalName().equalsIgnoreCase("xmlbible")
+                                || reader.getLocalName().equalsIgnoreCase("bible")) {
+                            return new BibleParser(reader).parseBible(Utils.getFileNameWithoutExtension(file.getName()));
+                        }
+                        break;
+                    }
+                }
+                LOGGER.log(Level.WARNING, "Couldn''t parse the bible {0} because I couldn''t find any <bible> or <xmlbible> root tags :-(", file);
+                return null;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private Bible parseBible(String defaultName) throws XMLStreamException {
+        String name = getAttribute("biblename");
+        Bible ret = new Bible(name == null ? defaultName : name);
+        ChildCounter children = new ChildCounter();
+        while (children.next()) {
+            String element = reader.getLocalName();
+            if (element.equalsIgnoreCase("information")) {
+                ret.setInformation(parseInfo());
+            } else if (element.equalsIgnoreCase("biblebook")
+                    || element.equalsIgnoreCase("b")
+                    || element.equalsIgnoreCase("book")) {
+                BibleBook book = parseBook(children.getIndex());
+                book.setBible(ret);
+                ret.addBook(book);
+            } else {
+                skipElement();
+            }
+        }
+        LOGGER.log(Level.INFO, "Parsed bible: {0}. Contains {1} books.", new Object[]{ret.getName(), ret.getBooks().length});
+        return ret;
+    }
+
+    private BibleInfo parseInfo() throws XMLStreamException {
+        BibleInfo ret = new BibleInfo();
+        ChildCounter children = new ChildCounter();
+        while (children.next()) {
+            ret.putAttribute(reader.getLocalName(), getText());
+        }
+        return ret;
+    }
+
+    private BibleBook parseBook(int defaultBookNum) throws XMLStreamException {
+        int bookNumber = parseNum(getAttribute("bnumber"));
+        if (bookNumber == -1) {
+            bookNumber = defaultBookNum;
+        }
+        String bookName = getAttribute("bname");
+        if (bookName == null) {
+            bookName = getAttribute("n");
+        }
+        if (bookName == null) {
+            bookName = getAttribute("name");
+        }
+        if (bookName == null) {
+            bookName = "Book " + bookNumber;
+        }
+        String bsname = getAttribute("bsname");
+        BibleBook ret = new BibleBook(bookNumber, bookName, bsname == null ? bookName : bsname);
+        ChildCounter children = new ChildCounter();
+        while (children.next()) {
+            String element = reader.getLocalName();
+            if (element.equalsIgnoreCase("chapter") || element.equalsIgnoreCase("c")) {
+                BibleChapter chapter = parseChapter(children.getIndex());
+                chapter.setBook(ret);
+                ret.addChapter(chapter);
+            } else {
+                skipElement();
+            }
+        }
+        return ret;
+    }
+
+    private BibleChapter parseChapter(int defaultNum) throws XMLStreamException {
+        int num = parseNum(getAttribute("cnumber") == null ? getAttribute("n") : getAttribute("cnumber"));
+        BibleChapter ret = new BibleChapter(num == -1 ? defaultNum : num);
+        ChildCounter children = new ChildCounter();
+        while (children.next()) {
+            String element = reader.getLocalName();
+            if (element.equalsIgnoreCase("vers") || element.equalsIgnoreCase("v")) {
+                int verseNum = parseNum(getAttribute("vnumber") == null ? getAttribute("n") : getAttribute("vnumber"));
+                String text = getText().replace("\n", " ").trim();
+                if (verseNum != -1) {
+                    BibleVerse verse = new BibleVerse(verseNum, text);
+                    verse.setChapter(ret);
+                    ret.addVerse(verse);
+                }
+            } else {
+                skipElement();
+            }
+        }
+        return ret;
+    }
+
+    private static int parseNum(String num) {
+        if (num == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(num.trim());
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Get an attribute of the current element, ignoring its case.
+     */
+    private String getAttribute(String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (reader.getAttributeLocalName(i).equalsIgnoreCase(name)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all the text in the current element, including any nested elements,
+     * leaving the reader on its end tag.
+     */
+    private String getText() throws XMLStreamException {
+        StringBuilder ret = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    ret.append(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Skip the current element, leaving the reader on its end tag.
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Steps through the child elements of the current element, keeping
+     * track of the index each would have in the DOM's child node list (where
+     * each run of text and each comment counts as a node) - the default book
+     * and chapter numbers are based on this.
+     */
+    private class ChildCounter {
+
+        private int index = -1;
+        private boolean inText;
+
+        /**
+         * Move to the next child element.
+         *
+         * @return true if the reader is now on the start of a child element,
+         * false if it's on the end of the parent.
+         */
+        boolean next() throws XMLStreamException {
+            while (true) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        index++;
+                        inText = false;
+                        return true;
+                    case XMLStreamConstants.END_ELEMENT:
+                        return false;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        if (!inText) {
+                            index++;
+                            inText = true;
+                        }
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        index++;
+                        inText = false;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        int getIndex() {
+            return index;
+        }
+    }
+}
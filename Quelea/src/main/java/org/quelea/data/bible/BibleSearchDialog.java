@@ -44,6 +44,8 @@ import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import org.quelea.data.displayable.BiblePassage;
 import org.quelea.services.languages.LabelGrabber;
+import org.quelea.services.lucene.BibleSearchIndex;
+import org.quelea.services.lucene.BibleSearchResults;
 import org.quelea.services.utils.QueleaProperties;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.widgets.LoadingPane;
@@ -117,6 +119,11 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
         searchField.textProperty().addListener((ObservableValue<? extends String> ov, String t, String t1) -> {
             update();
         });
+        searchResults.setOnEndShown(() -> {
+            if (lastSearch != null) {
+                lastSearch.more();
+            }
+        });
         addToSchedule.setOnAction((ActionEvent t) -> {
             if (searchResults.getSelectionModel().getSelectedItem().getValue() instanceof BibleVerse) {
                 BibleChapter chap = (BibleChapter) searchResults.getSelectionModel().getSelectedItem().getValue().getParent();
@@ -160,12 +167,90 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
         });
     }
 
+    private static final int PAGE_SIZE = 200;
     private ExecutorService updateExecutor = Executors.newSingleThreadExecutor();
-    private ExecRunnable lastUpdateRunnable = null;
+    private Search lastSearch = null;
 
-    private interface ExecRunnable extends Runnable {
+    /**
+     * A search that's being shown in the results. The first couple of pages
+     * of hits are shown straight away, and the rest a page at a time as the
+     * user scrolls to the end of the results. The hits are read on the
+     * update thread, and the search is closed there once it's cancelled.
+     */
+    private class Search implements Runnable {
+
+        private final String text;
+        private final String bibleName;
+        private volatile boolean cancel = false;
+        private BibleSearchIndex.Cursor cursor;
+        private boolean loading = true;
+        private boolean more = false;
+        private int pages = 0;
+
+        Search(String text, String bibleName) {
+            this.text = text;
+            this.bibleName = bibleName;
+        }
+
+        void cancel() {
+            cancel = true;
+            updateExecutor.submit(() -> {
+                if (cursor != null) {
+                    cursor.close();
+                    cursor = null;
+                }
+            });
+        }
+
+        /**
+         * Show the next page of hits, if there is one and it isn't already
+         * being read. Must be called on the FX thread.
+         */
+        void more() {
+            if (!loading && more && !cancel) {
+                loading = true;
+                updateExecutor.submit(this::nextPage);
+            }
+        }
 
-        void cancel();
+        @Override
+        public void run() {
+            if (cancel) {
+                return;
+            }
+            cursor = BibleManager.get().getIndex().search(text, bibleName);
+            nextPage();
+        }
+
+        private void nextPage() {
+            if (cancel || cursor == null) {
+                return;
+            }
+            final BibleSearchResults results = cursor.next(PAGE_SIZE);
+            Platform.runLater(() -> {
+                if (cancel) {
+                    return;
+                }
+                if (results.getOffset() == 0) {
+                    searchResults.reset();
+                    overlay.hide();
+                }
+                for (BibleSearchResults.Hit hit : results.getHits()) {
+                    searchResults.add(hit.getVerse(), hit.getOffsets());
+                }
+                String resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.results.found");
+                if (results.getTotalHits() == 1 && LabelGrabber.INSTANCE.isLocallyDefined("bible.search.result.found")) {
+                    resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.result.found");
+                }
+                resultsField.setText(" " + results.getTotalHits() + " " + resultsfoundSuffix);
+                loading = false;
+                more = results.hasMore();
+                pages++;
+                if (pages < 2 || searchResults.isEndShown()) {
+                    more();
+                }
+            });
+        }
     }
 
     /**
@@ -173,49 +258,17 @@ public class BibleSearchDialog extends Stage implements BibleChangeListener {
      */
     private void update() {
         final String text = searchField.getText();
+        if (lastSearch != null) {
+            lastSearch.cancel();
+            lastSearch = null;
+        }
         if (text.length() > 3) {
             if (BibleManager.get().isIndexInit()) {
                 searchResults.reset();
                 overlay.show();
-                ExecRunnable execRunnable = new ExecRunnable() {
-                    private volatile boolean cancel = false;
-
-                    public void cancel() {
-                        cancel = true;
-                    }
-
-                    public void run() {
-                        if (cancel) {
-                            return;
-                        }
-                        final BibleChapter[] results = BibleManager.get().getIndex().filter(text, null);
-                        Platform.runLater(() -> {
-                            searchResults.reset();
-                            if (!text.trim().isEmpty()) {
-                                for (BibleChapter chapter : results) {
-                                    if (bibles.getSelectionModel().getSelectedIndex() == 0 || chapter.getBook().getBible().getName().equals(bibles.getSelectionModel().getSelectedItem())) {
-                                        for (BibleVerse verse : chapter.getVerses()) {
-                                            if (verse.getText().toLowerCase().contains(text.toLowerCase())) {
-                                                searchResults.add(verse);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                            overlay.hide();
-                            String resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.results.found");
-                            if (searchResults.size() == 1 && LabelGrabber.INSTANCE.isLocallyDefined("bible.search.result.found")) {
-                                resultsfoundSuffix = LabelGrabber.INSTANCE.getLabel("bible.search.result.found");
-                            }
-                            resultsField.setText(" " + searchResults.size() + " " + resultsfoundSuffix);
-                        });
-                    }
-                };
-                if (lastUpdateRunnable != null) {
-                    lastUpdateRunnable.cancel();
-                }
-                lastUpdateRunnable = execRunnable;
-                updateExecutor.submit(execRunnable);
+                final String bibleName = bibles.getSelectionModel().getSelectedIndex() == 0 ? null : bibles.getSelectionModel().getSelectedItem();
+                lastSearch = new Search(text, bibleName);
+                updateExecutor.submit(lastSearch);
             }
         }
         searchResults.reset();
@@ -18,10 +18,15 @@
 package org.quelea.data.bible;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import javafx.application.Platform;
 import javafx.event.Event;
 import javafx.event.EventHandler;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TreeItem;
@@ -33,6 +38,7 @@ import javafx.scene.layout.FlowPane;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
+import javafx.scene.text.TextFlow;
 
 /**
  * The TreeView responsible for showing search results in a TreeView model
@@ -47,6 +53,9 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
     private ComboBox bibles;
     private boolean all = true;
     private int size;
+    private final Map<BibleVerse, int[]> highlights = new IdentityHashMap<>();
+    private ScrollBar scrollBar;
+    private Runnable onEndShown;
 
     /**
      * Constructs a TreeView object with a blank root BibleInterface item.
@@ -76,6 +85,55 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
                 trigger(t);
             }
         });
+        expandedItemCountProperty().addListener((ov, oldCount, newCount) -> checkEndShown());
+    }
+
+    /**
+     * Set what should happen when the end of the results comes into view -
+     * when the tree's scrolled to the bottom, or items are expanded or
+     * collapsed and everything fits without scrolling.
+     * <p/>
+     * @param onEndShown run when the end of the results is shown.
+     */
+    public void setOnEndShown(Runnable onEndShown) {
+        this.onEndShown = onEndShown;
+    }
+
+    /**
+     * Determine whether the end of the results is in view.
+     * <p/>
+     * @return true if the tree's scrolled to the bottom or doesn't need
+     * scrolling, false otherwise.
+     */
+    public boolean isEndShown() {
+        ScrollBar bar = getScrollBar();
+        if (bar == null || !bar.isVisible()) {
+            return true;
+        }
+        return bar.getValue() >= bar.getMax() - (bar.getMax() - bar.getMin()) * 0.05;
+    }
+
+    /**
+     * Get the vertical scroll bar of the tree, once it's been created.
+     */
+    private ScrollBar getScrollBar() {
+        if (scrollBar == null) {
+            for (Node node : lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                    scrollBar = (ScrollBar) node;
+                    scrollBar.valueProperty().addListener((ov, oldValue, newValue) -> checkEndShown());
+                    scrollBar.visibleProperty().addListener((ov, oldValue, newValue) -> checkEndShown());
+                    break;
+                }
+            }
+        }
+        return scrollBar;
+    }
+
+    private void checkEndShown() {
+        if (onEndShown != null && isEndShown()) {
+            onEndShown.run();
+        }
     }
 
     private void trigger(Event t) {
@@ -90,13 +148,15 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
 
                 int x = selected.getNum() - 1;
                 for (int i = 0; i < verses.length; i++) {
-                    Text text = new Text(verses[i].toString() + " ");
-                    text.getStyleClass().add("text");
                     if (i == x) {
-                        text.setFont(Font.font("Sans", FontWeight.BOLD, 14));
-                    } else {
-                        text.setFont(Font.font("Sans", 14));
+                        TextFlow flow = createHighlightedText(verses[i], highlights.get(selected));
+                        textPane.getChildren().add(flow);
+                        flow.prefWidthProperty().bind(sp.widthProperty().subtract(20)); //-20 to account for scroll bar width
+                        continue;
                     }
+                    Text text = new Text(verses[i].toString() + " ");
+                    text.getStyleClass().add("text");
+                    text.setFont(Font.font("Sans", 14));
                     textPane.getChildren().add(text);
                     text.wrappingWidthProperty().bind(sp.widthProperty().subtract(20)); //-20 to account for scroll bar width
                 }
@@ -108,6 +168,36 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
         }
     }
 
+    /**
+     * Create the text of the selected verse, in bold with the parts that
+     * matched the search underlined.
+     */
+    private TextFlow createHighlightedText(BibleVerse verse, int[] offsets) {
+        String verseText = verse.getVerseText();
+        TextFlow flow = new TextFlow();
+        flow.getChildren().add(createBoldText(verse.getNum() + " ", false));
+        int pos = 0;
+        if (offsets != null) {
+            for (int i = 0; i + 1 < offsets.length; i += 2) {
+                int start = Math.max(pos, Math.min(offsets[i], verseText.length()));
+                int end = Math.max(start, Math.min(offsets[i + 1], verseText.length()));
+                flow.getChildren().add(createBoldText(verseText.substring(pos, start), false));
+                flow.getChildren().add(createBoldText(verseText.substring(start, end), true));
+                pos = end;
+            }
+        }
+        flow.getChildren().add(createBoldText(verseText.substring(pos) + " ", false));
+        return flow;
+    }
+
+    private static Text createBoldText(String str, boolean underline) {
+        Text text = new Text(str);
+        text.getStyleClass().add("text");
+        text.setFont(Font.font("Sans", FontWeight.BOLD, 14));
+        text.setUnderline(underline);
+        return text;
+    }
+
     /**
      * Resets the root and expands it.
      * <p/>
@@ -125,6 +215,21 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
      * @param verse The bible verse to add into the tree.
      */
     public void add(BibleVerse verse) {
+        add(verse, null);
+    }
+
+    /**
+     * Adds the filtered results into the treeview, along with where in the
+     * verse the search matched so it can be highlighted.
+     * <p/>
+     * @param verse The bible verse to add into the tree.
+     * @param offsets the start and end offsets of each match in the verse
+     * text, in pairs, or null if there's nothing to highlight.
+     */
+    public void add(BibleVerse verse, int[] offsets) {
+        if (offsets != null) {
+            highlights.put(verse, offsets);
+        }
         BibleChapter chapter = (BibleChapter) verse.getParent();
         BibleBook book = (BibleBook) chapter.getParent();
         Bible bible = (Bible) book.getParent();
@@ -187,6 +292,7 @@ public class BibleSearchTreeView extends TreeView<BibleInterface> {
         }
         root = getRoot();
         size = 0;
+        highlights.clear();
         this.setShowRoot(false);
     }
 }
\ No newline at end of file
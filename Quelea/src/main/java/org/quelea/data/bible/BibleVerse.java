@@ -41,6 +41,17 @@ public final class BibleVerse implements BibleInterface, Serializable {
         //For internal use
     }
 
+    /**
+     * Create a new verse.
+     *
+     * @param num the verse number.
+     * @param verse the text of the verse.
+     */
+    BibleVerse(int num, String verse) {
+        this.num = num;
+        this.verse = verse;
+    }
+
     @Override
     public int hashCode() {
         int hash = 5;
@@ -21,7 +21,8 @@ public class HibernateUtil {
 
     private static SessionFactory sessionFactory;
     private static ServiceRegistry serviceRegistry;
-    private static boolean init = false;
+    private static volatile boolean init = false;
+    private static boolean failed = false;
     private static final Logger LOGGER = LoggerUtils.getLogger();
 
     public interface SessionCallback {
@@ -29,7 +30,17 @@ public class HibernateUtil {
         void execute(Session session);
     }
 
-    public static boolean init() {
+    /**
+     * Initialise the database, if it hasn't been already. This can take a
+     * while, so Quelea starts it in the background - anything that needs the
+     * database before then waits here until it's done.
+     * <p/>
+     * @return true if the database is ready, false if it couldn't be opened.
+     */
+    public static synchronized boolean init() {
+        if (init || failed) {
+            return init;
+        }
         try {
             LOGGER.info("Initialising hibernate");
             final String location = new File(new File(QueleaProperties.get().getQueleaUserHome(), "database_new"), "database_new").getAbsolutePath();
@@ -54,6 +65,7 @@ public class HibernateUtil {
             return true;
         } catch (Throwable ex) {
             LOGGER.log(Level.INFO, "Initial SessionFactory creation failed. Quelea is probably already running.", ex);
+            failed = true;
             return false;
         }
     }
@@ -65,8 +77,8 @@ public class HibernateUtil {
      * @param callback
      */
     public static void execute(SessionCallback callback) {
-        if (!init) {
-            throw new IllegalStateException("Database must be initialised first");
+        if (!init && !init()) {
+            throw new IllegalStateException("Database couldn't be initialised");
         }
 
         Session session = null;
@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.quelea.data.db.model.Song;
 
@@ -14,6 +16,7 @@ import org.quelea.data.db.model.Song;
  */
 public class SongDao {
 
+    private static final int FETCH_SIZE = 500;
     private Session session = null;
 
     public SongDao(Session session) {
@@ -24,8 +27,37 @@ public class SongDao {
         return (Song) session.load(Song.class, id);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Get all the songs in the database with a single query. The theme and
+     * text shadow of each song are fetched in the same query, and the rows are
+     * streamed through a forward only cursor rather than loaded one by one.
+     *
+     * @return all the songs in the database.
+     */
     public List<Song> getSongs() {
+        Query getAllSongQuery = session.createQuery("select s from Song s left join fetch s.theme t left join fetch t.textShadow");
+        getAllSongQuery.setReadOnly(true);
+        getAllSongQuery.setFetchSize(FETCH_SIZE);
+        List<Song> ret = new ArrayList<>();
+        ScrollableResults results = getAllSongQuery.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            while (results.next()) {
+                ret.add((Song) results.get(0));
+            }
+        } finally {
+            results.close();
+        }
+        return ret;
+    }
+
+    /**
+     * Get all the songs in the database, loading each one individually. This
+     * is much slower than getSongs(), but should be used if that fails.
+     *
+     * @return all the songs in the database.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Song> getSongsIndividually() {
         Query getAllSongQuery = session.createQuery("from Song");
         /*
          * We use an iterator here (rather then just doing getAllSongQuery.list()
@@ -0,0 +1,301 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.quelea.data.ThemeDTO;
+import org.quelea.data.displayable.SongDisplayable;
+import org.quelea.data.displayable.TextSection;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * A compact binary snapshot of the song library. It's written when Quelea
+ * exits and read in one go when it next starts, so the library can be shown
+ * and searched before the database has finished loading.
+ * <p/>
+ * The snapshot holds a table of distinct themes followed by the songs, each
+ * of which refers to its theme by index. Sections aren't stored separately -
+ * they're parsed from the raw lyrics exactly as they are when loading from the
+ * database.
+ * <p/>
+ * @author Michael
+ */
+public class SongLibrarySnapshot {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAGIC = 0x51534C42;
+    private static final int VERSION = 1;
+    private final File file;
+
+    /**
+     * The contents of a snapshot.
+     */
+    public static class Contents {
+
+        private final SongDisplayable[] songs;
+        private final String stamp;
+
+        private Contents(SongDisplayable[] songs, String stamp) {
+            this.songs = songs;
+            this.stamp = stamp;
+        }
+
+        /**
+         * Get the songs in the snapshot, in library order.
+         * <p/>
+         * @return the songs in the snapshot.
+         */
+        public SongDisplayable[] getSongs() {
+            return songs;
+        }
+
+        /**
+         * Get the stamp of the library when the snapshot was written.
+         * <p/>
+         * @return the library stamp.
+         */
+        public String getStamp() {
+            return stamp;
+        }
+    }
+
+    /**
+     * Create a new snapshot backed by the given file.
+     * <p/>
+     * @param file the snapshot file.
+     */
+    public SongLibrarySnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Create a new snapshot backed by the default file in the Quelea user
+     * home.
+     */
+    public SongLibrarySnapshot() {
+        this(new File(QueleaProperties.get().getQueleaUserHome(), "songlibrary.dat"));
+    }
+
+    /**
+     * Write the given songs to the snapshot file, replacing any existing
+     * snapshot.
+     * <p/>
+     * @param songs the songs in the library, in library order.
+     * @param stamp the stamp of the library.
+     */
+    public void write(SongDisplayable[] songs, String stamp) {
+        final long startTime = System.currentTimeMillis();
+        Map<String, Integer> themes = new LinkedHashMap<>();
+        int[] themeIndexes = new int[songs.length];
+        for (int i = 0; i < songs.length; i++) {
+            ThemeDTO theme = songs[i].getTheme();
+            String themeStr = theme == null ? "" : theme.asString();
+            Integer themeIndex = themes.get(themeStr);
+            if (themeIndex == null) {
+                themeIndex = themes.size();
+                themes.put(themeStr, themeIndex);
+            }
+            themeIndexes[i] = themeIndex;
+        }
+        File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, stamp);
+            out.writeInt(themes.size());
+            for (String theme : themes.keySet()) {
+                writeString(out, theme);
+            }
+            out.writeInt(songs.length);
+            for (int i = 0; i < songs.length; i++) {
+                SongDisplayable song = songs[i];
+                out.writeLong(song.getID());
+                out.writeInt(themeIndexes[i]);
+                writeString(out, song.getTitle());
+                writeString(out, song.getAuthor());
+                writeString(out, song.getCcli());
+                writeString(out, song.getYear());
+                writeString(out, song.getPublisher());
+                writeString(out, song.getCopyright());
+                writeString(out, song.getKey());
+                writeString(out, song.getCapo());
+                writeString(out, song.getInfo());
+                writeString(out, song.getLyrics(true, true));
+                Map<String, String> translations = song.getTranslations();
+                if (translations == null) {
+                    out.writeInt(0);
+                } else {
+                    out.writeInt(translations.size());
+                    for (Map.Entry<String, String> translation : translations.entrySet()) {
+                        writeString(out, translation.getKey());
+                        writeString(out, translation.getValue());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't write song library snapshot", ex);
+            tempFile.delete();
+            return;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOGGER.log(Level.INFO, "Wrote song library snapshot of {0} songs in {1}ms", new Object[]{songs.length, System.currentTimeMillis() - startTime});
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't replace song library snapshot", ex);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Read the snapshot file.
+     * <p/>
+     * @return the contents of the snapshot, or null if there's no snapshot or
+     * it couldn't be read.
+     */
+    public Contents read() {
+        if (!file.exists()) {
+            return null;
+        }
+        final long startTime = System.currentTimeMillis();
+        try {
+            //Every song is decoded straight away, so just read the whole file
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                LOGGER.log(Level.INFO, "Ignoring song library snapshot with unknown format");
+                return null;
+            }
+            String stamp = readString(buf);
+            String[] themeStrs = new String[buf.getInt()];
+            for (int i = 0; i < themeStrs.length; i++) {
+                themeStrs[i] = readString(buf);
+            }
+            final ThemeDTO[] themes = new ThemeDTO[themeStrs.length];
+            for (int i = 0; i < themes.length; i++) {
+                themes[i] = ThemeDTO.fromString(themeStrs[i]);
+            }
+            final int count = buf.getInt();
+            final List<SnapshotSong> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                SnapshotSong record = new SnapshotSong();
+                record.id = buf.getLong();
+                record.theme = buf.getInt();
+                record.title = readString(buf);
+                record.author = readString(buf);
+                record.ccli = readString(buf);
+                record.year = readString(buf);
+                record.publisher = readString(buf);
+                record.copyright = readString(buf);
+                record.key = readString(buf);
+                record.capo = readString(buf);
+                record.info = readString(buf);
+                record.lyrics = readString(buf);
+                int translationCount = buf.getInt();
+                record.translations = new HashMap<>();
+                for (int j = 0; j < translationCount; j++) {
+                    record.translations.put(readString(buf), readString(buf));
+                }
+                records.add(record);
+            }
+            SongDisplayable[] songs = IntStream.range(0, count).parallel()
+                    .mapToObj(i -> records.get(i).toDisplayable(themes))
+                    .toArray(SongDisplayable[]::new);
+            LOGGER.log(Level.INFO, "Read song library snapshot of {0} songs in {1}ms", new Object[]{songs.length, System.currentTimeMillis() - startTime});
+            return new Contents(songs, stamp);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't read song library snapshot", ex);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A song as it's stored in the snapshot.
+     */
+    private static class SnapshotSong {
+
+        private long id;
+        private int theme;
+        private String title;
+        private String author;
+        private String ccli;
+        private String year;
+        private String publisher;
+        private String copyright;
+        private String key;
+        private String capo;
+        private String info;
+        private String lyrics;
+        private HashMap<String, String> translations;
+
+        private SongDisplayable toDisplayable(ThemeDTO[] themes) {
+            SongDisplayable song = new SongDisplayable.Builder(title, author)
+                    .ccli(ccli)
+                    .year(year)
+                    .publisher(publisher)
+                    .copyright(copyright)
+                    .key(key)
+                    .info(info)
+                    .capo(capo)
+                    .translations(translations)
+                    .lyrics(lyrics)
+                    .id(id).get();
+            ThemeDTO themedto = themes[theme];
+            for (TextSection section : song.getSections()) {
+                section.setTheme(themedto);
+            }
+            song.setTheme(themedto);
+            return song;
+        }
+    }
+}
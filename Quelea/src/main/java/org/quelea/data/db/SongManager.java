@@ -21,23 +21,31 @@ import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javafx.application.Platform;
 import org.hibernate.ObjectNotFoundException;
 import org.hibernate.Session;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.db.model.Song;
+import org.quelea.data.db.model.TextShadow;
 import org.quelea.data.db.model.Theme;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.data.displayable.TextSection;
 import org.quelea.services.lucene.SongSearchIndex;
 import org.quelea.services.utils.DatabaseListener;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.SongFingerprintIndex;
 import org.quelea.windows.main.widgets.LoadingPane;
 
 /**
@@ -48,11 +56,15 @@ import org.quelea.windows.main.widgets.LoadingPane;
 public final class SongManager {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int PROGRESS_INTERVAL = 50;
     private static volatile SongManager INSTANCE;
     private final SongSearchIndex index;
-    private boolean indexIsClear;
+    private final SongFingerprintIndex fingerprints;
+    private volatile boolean indexIsClear;
     private SoftReference<SongDisplayable[]> cacheSongs = new SoftReference<>(null);
     private final Set<DatabaseListener> listeners;
+    private final SongLibrarySnapshot snapshot;
+    private volatile String snapshotStamp;
 
     /**
      * Initialise the song database.
@@ -61,21 +73,21 @@ public final class SongManager {
         listeners = new HashSet<>();
         indexIsClear = true;
         index = new SongSearchIndex();
+        fingerprints = new SongFingerprintIndex();
+        snapshot = new SongLibrarySnapshot();
     }
 
     /**
-     * Get the singleton instance of this class. Return null if there was an
-     * error with the database.
+     * Get the singleton instance of this class. This doesn't wait for the
+     * database - anything that uses it waits for it to be initialised
+     * instead (see HibernateUtil.init()), so the snapshot and listeners can
+     * be used straight away.
      * <p/>
      * @return the singleton instance of this class.
      */
     public static synchronized SongManager get() {
         if (INSTANCE == null) {
-            if (HibernateUtil.init()) {
-                INSTANCE = new SongManager();
-            } else {
-                return null;
-            }
+            INSTANCE = new SongManager();
         }
         return INSTANCE;
     }
@@ -89,6 +101,20 @@ public final class SongManager {
         return index;
     }
 
+    /**
+     * Get the lyric fingerprints of the songs in this database, used to find
+     * duplicate songs. The fingerprints are worked out the first time this is
+     * called, and kept up to date from then on.
+     * <p/>
+     * @return the fingerprint index.
+     */
+    public SongFingerprintIndex getFingerprintIndex() {
+        if (!fingerprints.isLoaded()) {
+            fingerprints.load(Arrays.asList(getSongs()));
+        }
+        return fingerprints;
+    }
+
     /**
      * Register a database listener with this database.
      * <p/>
@@ -111,6 +137,40 @@ public final class SongManager {
         return getSongs(null);
     }
 
+    /**
+     * Get the songs from the library snapshot written when Quelea last exited.
+     * This doesn't touch the database, so can be used to show the library
+     * while the songs are still being loaded - once getSongs() has returned
+     * its songs should be used instead.
+     * <p/>
+     * @return the songs in the snapshot, or null if the songs have already
+     * been loaded from the database or there's no usable snapshot.
+     */
+    public SongDisplayable[] getSnapshotSongs() {
+        if (!indexIsClear) {
+            return null;
+        }
+        SongLibrarySnapshot.Contents contents = snapshot.read();
+        if (contents == null) {
+            return null;
+        }
+        snapshotStamp = contents.getStamp();
+        index.preload(contents.getSongs(), contents.getStamp());
+        return contents.getSongs();
+    }
+
+    /**
+     * Write the current song library to the snapshot, so it can be shown
+     * straight away next time Quelea starts. Does nothing if the songs were
+     * never loaded from the database.
+     */
+    public synchronized void writeSnapshot() {
+        if (indexIsClear) {
+            return;
+        }
+        snapshot.write(getSongs(), index.getStamp());
+    }
+
     /**
      * Get all the songs in the database.
      * <p/>
@@ -121,58 +181,36 @@ public final class SongManager {
             return cacheSongs.get();
         }
         final Set<SongDisplayable> songs = new TreeSet<>();
-        HibernateUtil.execute((Session session) -> {
-            List<Song> songsList = new SongDao(session).getSongs();
-            for (int si = 0; si < songsList.size(); si++) {
-                final int finalSi = si;
-                if (loadingPane != null) {
-                    Platform.runLater(() -> {
-                        loadingPane.setProgress((double) finalSi / songsList.size());
-                    });
-                }
-                Song song = songsList.get(si);
-                try {
-                    song.getTitle();
-                } catch (Exception ex) {
-                    /*
-                     * Sometimes (rarely) a song can become corrupt - not entirely 
-                     * sure why, but this allows us to load the database ok whilst
-                     * still skipping over the corrupt entries.
-                     */
-                    LOGGER.log(Level.WARNING, "Song with id " + song.getId() + " is corrupt, skipping...", ex);
-                    continue;
-                }
-                final SongDisplayable songDisplayable = new SongDisplayable.Builder(song.getTitle(),
-                        song.getAuthor())
-                        .ccli(song.getCcli())
-                        .year(song.getYear())
-                        .publisher(song.getPublisher())
-                        .copyright(song.getCopyright())
-                        .key(song.getKey())
-                        .info(song.getInfo())
-                        .capo(song.getCapo())
-                        .translations(song.getTranslations())
-                        .lyrics(song.getLyrics())
-                        .id(song.getId()).get();
-                final Theme theme = song.getTheme();
-                final ThemeDTO themedto = ThemeDTO.getDTO(theme);
-                for (TextSection section : songDisplayable.getSections()) {
-                    section.setTheme(themedto);
-                }
-                songDisplayable.setTheme(themedto);
-                songs.add(songDisplayable);
-            }
-            if (loadingPane != null) {
-                Platform.runLater(() -> {
-                    loadingPane.setProgress(-1);
-                });
-            }
-        });
+        final long startTime = System.currentTimeMillis();
+        try {
+            HibernateUtil.execute((Session session) -> {
+                songs.addAll(toDisplayables(new SongDao(session).getSongs(), loadingPane));
+            });
+        } catch (IllegalStateException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't load songs in bulk, loading individually instead", ex);
+            songs.clear();
+            HibernateUtil.execute((Session session) -> {
+                songs.addAll(toDisplayables(new SongDao(session).getSongsIndividually(), loadingPane));
+            });
+        }
+        if (loadingPane != null) {
+            Platform.runLater(() -> {
+                loadingPane.setProgress(-1);
+            });
+        }
+        LOGGER.log(Level.INFO, "Loaded {0} songs from the database in {1}ms", new Object[]{songs.size(), System.currentTimeMillis() - startTime});
 
         if (indexIsClear) {
             indexIsClear = false;
-            LOGGER.log(Level.INFO, "Adding {0} songs to index", songs.size());
-            index.addAll(songs);
+            LOGGER.log(Level.INFO, "Loading {0} songs into index", songs.size());
+            index.load(songs);
+            if (snapshotStamp != null) {
+                if (snapshotStamp.equals(index.getStamp())) {
+                    LOGGER.log(Level.INFO, "Song library snapshot matches the database");
+                } else {
+                    LOGGER.log(Level.INFO, "Song library snapshot was out of date, using songs from the database");
+                }
+            }
         }
         SongDisplayable[] songArr = songs.toArray(new SongDisplayable[songs.size()]);
         cacheSongs = new SoftReference<>(songArr);
@@ -196,8 +234,6 @@ public final class SongManager {
      * @return true if the operation succeeded, false otherwise.
      */
     public synchronized boolean addSong(final SongDisplayable[] songs, final boolean fireUpdate) {
-        cacheSongs.clear();
-        clearIndex();
         final List<SongDisplayable> adjustedSongs = new ArrayList<>();
         for (SongDisplayable song : songs) {
             if (song.getSections().length > 0) {
@@ -207,6 +243,7 @@ public final class SongManager {
         if (adjustedSongs.isEmpty()) {
             return false;
         }
+        final List<Song> savedSongs = new ArrayList<>();
         try {
             HibernateUtil.execute((Session session) -> {
                 for (SongDisplayable song : adjustedSongs) {
@@ -224,12 +261,22 @@ public final class SongManager {
                             nullTheme ? ThemeDTO.DEFAULT_THEME.getTheme() : new Theme(song.getSections()[0].getTheme().getTheme()),
                             song.getTranslations());
                     session.save(newSong);
+                    savedSongs.add(newSong);
                 }
             });
+            final List<SongDisplayable> addedSongs = new ArrayList<>();
+            for (Song song : savedSongs) {
+                addedSongs.add(toDisplayable(song));
+            }
+            index.addAll(addedSongs);
+            fingerprints.addAll(addedSongs);
+            addToCache(addedSongs);
         } catch (IllegalStateException ex) {
             LOGGER.log(Level.WARNING, "Couldn't add song", ex);
+            cacheSongs.clear();
+            clearIndex();
+            getSongs();
         }
-        getSongs();
         if (fireUpdate) {
             fireUpdate();
         }
@@ -276,6 +323,9 @@ public final class SongManager {
                     updatedSong.setTheme(nullTheme ? ThemeDTO.DEFAULT_THEME.getTheme() : new Theme(song.getSections()[0].getTheme().getTheme()));
                     session.update(updatedSong);
                     index.add(song);
+                    fingerprints.add(song);
+                    removeFromCache(song.getID());
+                    addToCache(Collections.singletonList(song));
                 } catch (ObjectNotFoundException e) {
                     LOGGER.log(Level.INFO, "Updating song that doesn't exist, adding instead");
                     addSong(song, true);
@@ -305,7 +355,6 @@ public final class SongManager {
      */
     public synchronized boolean removeSong(final SongDisplayable song) {
         LOGGER.log(Level.INFO, "Removing song {0}", song.getID());
-        cacheSongs.clear();
         try {
             HibernateUtil.execute((Session session) -> {
                 Song deletedSong = new SongDao(session).getSongById(song.getID());
@@ -316,6 +365,8 @@ public final class SongManager {
             return false;
         }
         index.remove(song);
+        fingerprints.remove(song);
+        removeFromCache(song.getID());
         fireUpdate();
         LOGGER.log(Level.INFO, "Removed song {0}", song.getID());
         return true;
@@ -323,6 +374,175 @@ public final class SongManager {
 
     private void clearIndex() {
         index.clear();
+        fingerprints.clear();
         indexIsClear = true;
     }
+
+    /**
+     * Merge the given songs into the cached song array, if it's present,
+     * keeping it in sorted order. Songs that compare equal to one already in
+     * the cache are skipped, as they would be when loading the whole database.
+     * <p/>
+     * @param songs the songs to add to the cache.
+     */
+    private void addToCache(Collection<SongDisplayable> songs) {
+        SongDisplayable[] cached = cacheSongs.get();
+        if (cached == null) {
+            return;
+        }
+        List<SongDisplayable> cachedList = Arrays.asList(cached);
+        List<SongDisplayable> merged = new ArrayList<>(cached.length + songs.size());
+        int from = 0;
+        for (SongDisplayable song : new TreeSet<>(songs)) {
+            int pos = Arrays.binarySearch(cached, from, cached.length, song);
+            if (pos >= 0) {
+                continue;
+            }
+            int insert = -pos - 1;
+            merged.addAll(cachedList.subList(from, insert));
+            merged.add(song);
+            from = insert;
+        }
+        merged.addAll(cachedList.subList(from, cached.length));
+        cacheSongs = new SoftReference<>(merged.toArray(new SongDisplayable[merged.size()]));
+    }
+
+    /**
+     * Remove the song with the given id from the cached song array, if it's
+     * present.
+     * <p/>
+     * @param id the id of the song to remove.
+     */
+    private void removeFromCache(long id) {
+        SongDisplayable[] cached = cacheSongs.get();
+        if (cached == null) {
+            return;
+        }
+        List<SongDisplayable> remaining = new ArrayList<>(cached.length);
+        for (SongDisplayable song : cached) {
+            if (song.getID() != id) {
+                remaining.add(song);
+            }
+        }
+        cacheSongs = new SoftReference<>(remaining.toArray(new SongDisplayable[remaining.size()]));
+    }
+
+    /**
+     * Create displayables from the given database songs, skipping any that
+     * are corrupt. Songs with identical themes share a single theme DTO, and
+     * the displayables themselves are built in parallel.
+     * <p/>
+     * @param songsList the database songs.
+     * @param loadingPane the loading pane to update with progress, or null.
+     * @return the song displayables.
+     */
+    private List<SongDisplayable> toDisplayables(List<Song> songsList, LoadingPane loadingPane) {
+        final List<Song> validSongs = new ArrayList<>(songsList.size());
+        final List<ThemeDTO> validThemes = new ArrayList<>(songsList.size());
+        final Map<String, ThemeDTO> themes = new HashMap<>();
+        for (Song song : songsList) {
+            final ThemeDTO themedto;
+            try {
+                song.getTitle();
+                final Theme theme = song.getTheme();
+                themedto = themes.computeIfAbsent(getThemeKey(theme), key -> ThemeDTO.getDTO(theme));
+            } catch (Exception ex) {
+                /*
+                 * Sometimes (rarely) a song can become corrupt - not entirely 
+                 * sure why, but this allows us to load the database ok whilst
+                 * still skipping over the corrupt entries.
+                 */
+                LOGGER.log(Level.WARNING, "Song with id " + song.getId() + " is corrupt, skipping...", ex);
+                continue;
+            }
+            validSongs.add(song);
+            validThemes.add(themedto);
+        }
+        LOGGER.log(Level.INFO, "Using {0} distinct themes for {1} songs", new Object[]{themes.size(), validSongs.size()});
+        final AtomicInteger built = new AtomicInteger();
+        return IntStream.range(0, validSongs.size()).parallel().mapToObj(i -> {
+            SongDisplayable songDisplayable = toDisplayable(validSongs.get(i), validThemes.get(i));
+            final int count = built.incrementAndGet();
+            if (loadingPane != null && count % PROGRESS_INTERVAL == 0) {
+                Platform.runLater(() -> {
+                    loadingPane.setProgress((double) count / validSongs.size());
+                });
+            }
+            return songDisplayable;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Get a key that's the same for any two database themes that would
+     * produce equal theme DTOs.
+     * <p/>
+     * @param theme the database theme.
+     * @return the key for this theme.
+     */
+    private static String getThemeKey(Theme theme) {
+        StringBuilder key = new StringBuilder();
+        key.append(theme.getName()).append('\u0000')
+                .append(theme.getFontname()).append('\u0000')
+                .append(theme.getFontcolour()).append('\u0000')
+                .append(theme.getTranslateFontname()).append('\u0000')
+                .append(theme.getTranslateFontcolour()).append('\u0000')
+                .append(theme.getBackgroundcolour()).append('\u0000')
+                .append(theme.getBackgroundimage()).append('\u0000')
+                .append(theme.getBackgroundvid()).append('\u0000')
+                .append(theme.getVideoHue()).append('\u0000')
+                .append(theme.getVideoStretch()).append('\u0000')
+                .append(theme.getTextPosition()).append('\u0000')
+                .append(theme.getTextAlignment()).append('\u0000')
+                .append(theme.isFontBold()).append('\u0000')
+                .append(theme.isFontItalic()).append('\u0000')
+                .append(theme.isTranslateFontBold()).append('\u0000')
+                .append(theme.isTranslateFontItalic());
+        TextShadow shadow = theme.getTextShadow();
+        if (shadow != null) {
+            key.append('\u0000').append(shadow.getShadowColor())
+                    .append('\u0000').append(shadow.getOffsetX())
+                    .append('\u0000').append(shadow.getOffsetY())
+                    .append('\u0000').append(shadow.getRadius())
+                    .append('\u0000').append(shadow.getSpread())
+                    .append('\u0000').append(shadow.getUse());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Create a displayable from the given database song.
+     * <p/>
+     * @param song the database song.
+     * @return the song displayable, with its theme applied to every section.
+     */
+    private SongDisplayable toDisplayable(Song song) {
+        return toDisplayable(song, ThemeDTO.getDTO(song.getTheme()));
+    }
+
+    /**
+     * Create a displayable from the given database song.
+     * <p/>
+     * @param song the database song.
+     * @param themedto the theme to apply to the song.
+     * @return the song displayable, with its theme applied to every section.
+     */
+    private SongDisplayable toDisplayable(Song song, ThemeDTO themedto) {
+        final SongDisplayable songDisplayable = new SongDisplayable.Builder(song.getTitle(),
+                song.getAuthor())
+                .ccli(song.getCcli())
+                .year(song.getYear())
+                .publisher(song.getPublisher())
+                .copyright(song.getCopyright())
+                .key(song.getKey())
+                .info(song.getInfo())
+                .capo(song.getCapo())
+                .translations(song.getTranslations())
+                .lyrics(song.getLyrics())
+                .id(song.getId()).get();
+        for (TextSection section : songDisplayable.getSections()) {
+            section.setTheme(themedto);
+        }
+        songDisplayable.setTheme(themedto);
+        return songDisplayable;
+    }
 }
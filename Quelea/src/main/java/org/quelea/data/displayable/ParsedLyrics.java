@@ -0,0 +1,147 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.displayable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.quelea.services.utils.LineTypeChecker;
+
+/**
+ * The lyrics of a song in the various forms they're needed in - with or
+ * without chords and comments, just the letters for comparing songs, and
+ * stripped of punctuation for searching. Each form is worked out the first
+ * time it's asked for and then kept.
+ * <p/>
+ * This is a snapshot of the song's sections at the time it was made, so
+ * SongDisplayable throws it away whenever its sections change.
+ * <p/>
+ * @author Michael
+ */
+public final class ParsedLyrics {
+
+    private static final Pattern NON_LETTERS = Pattern.compile("[^\\p{L}]");
+    private static final Pattern PUNCTUATION = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
+    private static final Pattern TRAILING_SPACE = Pattern.compile("\\s+$");
+    private final List<TextSection> sections;
+    private final String[] lyrics;
+    private volatile Boolean chords;
+    private volatile String letters;
+    private volatile String searchText;
+
+    /**
+     * Create the parsed lyrics for the given sections.
+     * <p/>
+     * @param sections the sections of the song.
+     */
+    ParsedLyrics(List<TextSection> sections) {
+        this.sections = Collections.unmodifiableList(new ArrayList<>(sections));
+        this.lyrics = new String[4];
+    }
+
+    /**
+     * Get the sections these lyrics were made from.
+     * <p/>
+     * @return the sections of the song.
+     */
+    public List<TextSection> getSections() {
+        return sections;
+    }
+
+    /**
+     * Get all the lyrics as a string, in the form SongDisplayable.setLyrics()
+     * can parse.
+     * <p/>
+     * @param includeChords true if any chords should be included, false
+     * otherwise.
+     * @param includeComments true if any comments should be included, false
+     * otherwise.
+     * @return the lyrics.
+     */
+    public String getLyrics(boolean includeChords, boolean includeComments) {
+        int index = (includeChords ? 2 : 0) + (includeComments ? 1 : 0);
+        String ret = lyrics[index];
+        if (ret == null) {
+            StringBuilder builder = new StringBuilder();
+            for (TextSection section : sections) {
+                if (section.getTitle() != null && !section.getTitle().equals("")) {
+                    builder.append(section.getTitle()).append("\n");
+                }
+                for (String line : section.getText(includeChords, includeComments)) {
+                    builder.append(line).append("\n");
+                }
+                builder.append("\n");
+            }
+            ret = TRAILING_SPACE.matcher(builder).replaceAll("").replace(" ", "<>");
+            lyrics[index] = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Determine whether these lyrics contain any lines of chords.
+     * <p/>
+     * @return true if there are chords, false otherwise.
+     */
+    public boolean hasChords() {
+        Boolean ret = chords;
+        if (ret == null) {
+            ret = false;
+            for (String line : getLyrics(true, true).split("\n")) {
+                if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
+                    ret = true;
+                    break;
+                }
+            }
+            chords = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Get just the letters of the lyrics (without chords or comments), with
+     * everything else removed. This is what's used to compare songs when
+     * looking for duplicates.
+     * <p/>
+     * @return the letters of the lyrics.
+     */
+    public String getLetters() {
+        String ret = letters;
+        if (ret == null) {
+            ret = NON_LETTERS.matcher(getLyrics(false, false)).replaceAll("");
+            letters = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Get the lyrics (without chords or comments) with punctuation removed,
+     * as they're indexed for searching.
+     * <p/>
+     * @return the search text of the lyrics.
+     */
+    public String getSearchText() {
+        String ret = searchText;
+        if (ret == null) {
+            ret = PUNCTUATION.matcher(getLyrics(false, false)).replaceAll("");
+            searchText = ret;
+        }
+        return ret;
+    }
+}
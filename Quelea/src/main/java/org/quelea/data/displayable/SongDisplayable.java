@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.scene.image.Image;
@@ -245,6 +246,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
     private boolean printChords;
     private String lastSearch = "";
     private Map<Dimension,Double> fontSizeCache;
+    private transient volatile ParsedLyrics parsedLyrics;
 
     /**
      * Copy constructor - creates a shallow copy.
@@ -252,7 +254,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param song the song to copy to create the new song.
      */
     public SongDisplayable(SongDisplayable song) {
-        this.fontSizeCache = new HashMap<>();
+        this.fontSizeCache = new ConcurrentHashMap<>();
         this.title = song.title;
         this.author = song.author;
         this.sections = new ArrayList<>();
@@ -293,7 +295,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param theme the theme of the song.
      */
     public SongDisplayable(String title, String author, ThemeDTO theme) {
-        this.fontSizeCache = new HashMap<>();
+        this.fontSizeCache = new ConcurrentHashMap<>();
         id = -1;
         this.title = title;
         this.author = author;
@@ -427,13 +429,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return true if it contains chords, false otherwise.
      */
     public boolean hasChords() {
-        String[] lyrics = getLyrics(true, true).split("\n");
-        for (String line : lyrics) {
-            if (new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
-                return true;
-            }
-        }
-        return false;
+        return getParsedLyrics().hasChords();
     }
 
     /**
@@ -674,17 +670,31 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @return the lyrics to this song.
      */
     public String getLyrics(boolean chords, boolean comments) {
-        StringBuilder ret = new StringBuilder();
-        for (TextSection section : sections) {
-            if (section.getTitle() != null && !section.getTitle().equals("")) {
-                ret.append(section.getTitle()).append("\n");
-            }
-            for (String line : section.getText(chords, comments)) {
-                ret.append(line).append("\n");
-            }
-            ret.append("\n");
+        return getParsedLyrics().getLyrics(chords, comments);
+    }
+
+    /**
+     * Get the lyrics of this song in the various forms they're used in. These
+     * are worked out once and kept until the song's sections change.
+     * <p/>
+     * @return the parsed lyrics of this song.
+     */
+    public ParsedLyrics getParsedLyrics() {
+        ParsedLyrics ret = parsedLyrics;
+        if (ret == null) {
+            ret = new ParsedLyrics(sections);
+            parsedLyrics = ret;
         }
-        return ret.toString().replaceAll("\\s+$", "").replace(" ", "<>");
+        return ret;
+    }
+
+    /**
+     * Throw away everything worked out from the sections, since they've
+     * changed.
+     */
+    private void sectionsChanged() {
+        fontSizeCache.clear();
+        parsedLyrics = null;
     }
 
     public void addTranslation(String translationName, String translationText) {
@@ -704,7 +714,6 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param lyrics the lyrics to set as this song's lyrics.
      */
     public void setLyrics(String lyrics) {
-        fontSizeCache.clear();
         sections.clear();
         boolean foundTitle = !(title == null || title.isEmpty());
         lyrics = lyrics.replaceAll("\n\n+", "\n\n");
@@ -759,6 +768,7 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
             }
             sections.add(new TextSection(sectionTitle, newLyrics, smallLines, true));
         }
+        sectionsChanged();
     }
 
     /**
@@ -767,11 +777,11 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param section the section to add.
      */
     public void addSection(TextSection section) {
-        fontSizeCache.clear();
         if (section.getTheme() == null) {
             section.setTheme(theme);
         }
         sections.add(section);
+        sectionsChanged();
     }
 
     /**
@@ -781,11 +791,11 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param section the section to add.
      */
     public void addSection(int index, TextSection section) {
-        fontSizeCache.clear();
         if (section.getTheme() == null) {
             section.setTheme(theme);
         }
         sections.add(index, section);
+        sectionsChanged();
     }
 
     /**
@@ -794,7 +804,6 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param sections the sections to add.
      */
     public void addSections(TextSection[] sections) {
-        fontSizeCache.clear();
         for (TextSection section : sections) {
             addSection(section);
         }
@@ -807,8 +816,8 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param index the index of the section to replace.
      */
     public void replaceSection(TextSection newSection, int index) {
-        fontSizeCache.clear();
         sections.set(index, newSection);
+        sectionsChanged();
     }
 
     /**
@@ -817,8 +826,8 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * @param index the index of the text section to remove.
      */
     public void removeSection(int index) {
-        fontSizeCache.clear();
         sections.remove(index);
+        sectionsChanged();
     }
 
     /**
@@ -1235,8 +1244,8 @@ public class SongDisplayable implements TextDisplayable, Comparable<SongDisplaya
      * Remove any duplicate sections in this song.
      */
     public void removeDuplicateSections() {
-        fontSizeCache.clear();
         Utils.removeDuplicateWithOrder(sections);
+        sectionsChanged();
     }
 
     /**
@@ -19,15 +19,22 @@ package org.quelea.data.displayable;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker.State;
 import javafx.scene.Cursor;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
+import netscape.javascript.JSException;
+import netscape.javascript.JSObject;
 import org.quelea.services.utils.LoggerUtils;
 import org.quelea.services.utils.Utils;
 import org.w3c.dom.Node;
@@ -45,7 +52,31 @@ public class WebDisplayable implements Displayable {
     private final WebView webView;
     private final WebEngine webEngine;
     private double zoomLevel = 1;
+    private final List<Runnable> repaintListeners;
+    private final RepaintBridge repaintBridge;
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * Script run on each page once it's loaded, to tell us whenever the page
+     * changes. Changes are coalesced to at most one call per animation frame.
+     */
+    private static final String REPAINT_SCRIPT = "(function() {"
+            + "var pending = false;"
+            + "var nextFrame = window.requestAnimationFrame || function(f) { return window.setTimeout(f, 16); };"
+            + "function changed() {"
+            + "  if (!pending) {"
+            + "    pending = true;"
+            + "    nextFrame(function() { pending = false; window.queleaRepaint.changed(); });"
+            + "  }"
+            + "}"
+            + "if (window.MutationObserver) {"
+            + "  new MutationObserver(changed).observe(document, {attributes: true, childList: true, characterData: true, subtree: true});"
+            + "}"
+            + "window.addEventListener('scroll', changed, true);"
+            + "window.addEventListener('resize', changed);"
+            + "document.addEventListener('load', changed, true);"
+            + "document.addEventListener('transitionend', changed, true);"
+            + "document.addEventListener('animationiteration', changed, true);"
+            + "})();";
 
     /**
      * Create a new web displayable.
@@ -59,12 +90,46 @@ public class WebDisplayable implements Displayable {
         webEngine.setJavaScriptEnabled(true);
         webView.setCursor(Cursor.NONE);
         webView.setZoom(zoomLevel);
+        repaintListeners = new CopyOnWriteArrayList<>();
+        repaintBridge = new RepaintBridge();
+        webEngine.getLoadWorker().stateProperty().addListener((ObservableValue<? extends State> ov, State oldState, State newState) -> {
+            if (newState == State.SUCCEEDED) {
+                addRepaintScript();
+            }
+            updatePreview();
+        });
+        webEngine.getLoadWorker().progressProperty().addListener((ObservableValue<? extends Number> ov, Number oldVal, Number newVal) -> {
+            updatePreview();
+        });
+        ChangeListener<Number> sizeListener = (ObservableValue<? extends Number> ov, Number oldVal, Number newVal) -> {
+            updatePreview();
+        };
+        webView.widthProperty().addListener(sizeListener);
+        webView.heightProperty().addListener(sizeListener);
+        webView.zoomProperty().addListener(sizeListener);
+        webView.addEventFilter(MouseEvent.MOUSE_RELEASED, e -> updatePreview());
+        webView.addEventFilter(KeyEvent.KEY_RELEASED, e -> updatePreview());
         webEngine.load(getUrl());
         webEngine.getLoadWorker().exceptionProperty().addListener((ObservableValue<? extends Throwable> ov, Throwable t, Throwable t1) -> {
             LOGGER.log(Level.WARNING, "Website loading exception: ", t1);
         });
     }
 
+    /**
+     * Add the script to the loaded page that lets us know when it changes.
+     * If the page won't take it, we still hear about loading, resizing and
+     * input, but not about the page changing by itself.
+     */
+    private void addRepaintScript() {
+        try {
+            JSObject window = (JSObject) webEngine.executeScript("window");
+            window.setMember("queleaRepaint", repaintBridge);
+            webEngine.executeScript(REPAINT_SCRIPT);
+        } catch (JSException | ClassCastException ex) {
+            LOGGER.log(Level.INFO, "Couldn't watch " + webEngine.getLocation() + " for changes", ex);
+        }
+    }
+
     /**
      * Get the displayable url.
      *
@@ -145,8 +210,35 @@ public class WebDisplayable implements Displayable {
         // Do nothing to be able to keep the page loaded in the background
     }
 
+    /**
+     * Tell anything showing a preview of this page that it's changed and the
+     * preview needs updating.
+     */
     public void updatePreview() {
+        for (Runnable listener : repaintListeners) {
+            listener.run();
+        }
+    }
 
+    /**
+     * Add a listener that's called whenever the page may have changed how it
+     * looks - when it loads, scrolls, is resized, zoomed or clicked on, or
+     * its content changes. It may be called many times in a row, so
+     * listeners should be cheap or coalesce the calls themselves.
+     *
+     * @param listener the listener to add.
+     */
+    public void addRepaintListener(Runnable listener) {
+        repaintListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with addRepaintListener().
+     *
+     * @param listener the listener to remove.
+     */
+    public void removeRepaintListener(Runnable listener) {
+        repaintListeners.remove(listener);
     }
 
     /**
@@ -200,4 +292,13 @@ public class WebDisplayable implements Displayable {
         webView.setZoom(zoomLevel);
     }
 
+    /**
+     * Class to receive changes to the page from the JavaScript in the WebView.
+     */
+    public class RepaintBridge {
+
+        public void changed() {
+            updatePreview();
+        }
+    }
 }
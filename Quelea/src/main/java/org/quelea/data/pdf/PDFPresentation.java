@@ -17,22 +17,30 @@
  */
 package org.quelea.data.pdf;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.ArrayList;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
+import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.SlideRenderer;
 
 /**
  * A PDF presentation that can be displayed.
+ * <p/>
+ * Pages are rendered on demand by a SlideRenderer rather than all up front -
+ * thumbnails first in the background, then full size pages as they're shown.
  *
  * @author Arvid
  */
 public class PDFPresentation implements Pdf {
 
-    private PdfSlide[] slides;
+    private static final int BIG_SIZE = 1920;
+    private static final int MAX_DOCUMENTS = 4;
+    private final SlideRenderer<PDDocument> renderer;
+    private final PdfSlide[] slides;
     public String file;
 
     /**
@@ -42,7 +50,34 @@ public class PDFPresentation implements Pdf {
      */
     public PDFPresentation(String file) throws IOException {
         this.file = file;
-        slides = makeSlides();
+        renderer = new SlideRenderer<>(file, new SlideRenderer.Source<PDDocument>() {
+            @Override
+            public PDDocument load() throws IOException {
+                return PDDocument.load(new File(file).getAbsoluteFile());
+            }
+
+            @Override
+            public int getSlideCount(PDDocument document) {
+                return document.getNumberOfPages();
+            }
+
+            @Override
+            public BufferedImage render(PDDocument document, int index, boolean thumbnail) throws IOException {
+                int size = thumbnail ? QueleaProperties.get().getThumbnailSize() : BIG_SIZE;
+                PDRectangle box = document.getPage(index).getCropBox();
+                float scale = size / Math.max(box.getWidth(), box.getHeight());
+                return new PDFRenderer(document).renderImage(index, scale, ImageType.RGB);
+            }
+
+            @Override
+            public void close(PDDocument document) throws IOException {
+                document.close();
+            }
+        }, MAX_DOCUMENTS, false);
+        slides = new PdfSlide[renderer.getSlideCount()];
+        for (int i = 0; i < slides.length; i++) {
+            slides[i] = new PdfSlide(renderer, i);
+        }
     }
 
     /**
@@ -67,23 +102,22 @@ public class PDFPresentation implements Pdf {
     }
 
     /**
-     * Make the slides that go in this PDF, this is what takes time and should
-     * only be done once.
+     * Start rendering the full size images of the pages from the given index
+     * onwards in the background, if they aren't cached already.
      *
-     * @return all the slides.
+     * @param index the index of the first page to render.
      */
-    private PdfSlide[] makeSlides() throws IOException {
-        File pdf = new File(file);
-        PDDocument document = PDDocument.load(pdf.getAbsoluteFile());
-        Path f = Files.createTempDirectory(null);
-        f.toFile().deleteOnExit();
-        ArrayList<PdfSlide> ret = new ArrayList<>();
-        PDFRenderer pdfRenderer = new PDFRenderer(document);
-        int totalPages = document.getNumberOfPages();
-        for (int i = 0; i < totalPages; i++) {
-            ret.add(new PdfSlide(i + 1, pdfRenderer));
-        }
-        document.close();
-        return ret.toArray(new PdfSlide[ret.size()]);
+    @Override
+    public void prefetch(int index) {
+        renderer.prefetch(index);
+    }
+
+    /**
+     * Free up the documents, thumbnails and cached pages of this
+     * presentation. They're loaded again if it's used after this.
+     */
+    @Override
+    public void dispose() {
+        renderer.dispose();
     }
 }
@@ -36,5 +36,17 @@ public interface Pdf {
      * in order.
      */
     PdfSlide[] getSlides();
+
+    /**
+     * Start preparing the slides from the given index onwards in the
+     * background, so they're ready to show.
+     * @param index the index of the first slide to prepare.
+     */
+    void prefetch(int index);
+
+    /**
+     * Free up any resources used by this presentation.
+     */
+    void dispose();
     
 }
@@ -17,96 +17,74 @@
  */
 package org.quelea.data.pdf;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
-import java.io.File;
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CancellationException;
 import javafx.scene.image.Image;
-import javax.imageio.ImageIO;
-import org.apache.pdfbox.rendering.ImageType;
-import org.apache.pdfbox.rendering.PDFRenderer;
-import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.SlideRenderer;
 
 /**
- * A slide in a PDF presentation.
+ * A slide in a PDF presentation. The images of the slide are rendered by the
+ * presentation when they're needed rather than when the slide is created.
  *
  * @author Arvid
  */
 public class PdfSlide {
 
-    private BufferedImage thumbnail;
-    private BufferedImage originalImage;
-    private final File outputfile;
-    private final File thumbnailFile;
-    private final int BIG_SIZE = 1920;
+    private final SlideRenderer<?> renderer;
+    private final int index;
 
     /**
      * Create a new PDF slide.
      *
-     * @param numSlide slide number
-     * @param pdfRenderer the renderer of the file
+     * @param renderer the renderer of the presentation the slide is in.
+     * @param index the index of the slide in the presentation.
      */
-    public PdfSlide(int numSlide, PDFRenderer pdfRenderer) throws IOException {
-        originalImage = resizeImage(pdfRenderer.renderImageWithDPI(numSlide - 1, 200, ImageType.RGB), BIG_SIZE, BIG_SIZE);
-        outputfile = File.createTempFile("slide" + numSlide, ".png");
-        outputfile.deleteOnExit();
-        ImageIO.write(originalImage, "png", outputfile);
-
-        thumbnail = resizeImage(originalImage, QueleaProperties.get().getThumbnailSize(), QueleaProperties.get().getThumbnailSize());
-        thumbnailFile = File.createTempFile("thumb" + numSlide, ".png");
-        thumbnailFile.deleteOnExit();
-        ImageIO.write(thumbnail, "png", thumbnailFile);
-        
-        originalImage.flush();
-        originalImage = null;
-        thumbnail.flush();
-        thumbnail = null;
+    PdfSlide(SlideRenderer<?> renderer, int index) {
+        this.renderer = renderer;
+        this.index = index;
     }
 
     /**
-     * Get the image from this slide.
+     * Get the image from this slide, waiting for it to be rendered if it
+     * isn't ready yet. This shouldn't be called on the FX thread.
      *
-     * @return the image of this slide.
+     * @return the image of this slide, or null if it couldn't be rendered.
      */
     public final Image getImage() {
-        return new Image("file:" + outputfile.getAbsolutePath());
+        return renderer.getImage(index);
     }
 
     /**
-     * Get the thumbnail of this slide.
+     * Get the image from this slide as soon as it's been rendered.
      *
-     * @return the image of this slide.
+     * @return the image of this slide, which is null if it couldn't be
+     * rendered.
      */
-    public final Image getThumbnail() {
-        return new Image("file:" + thumbnailFile.getAbsolutePath());
+    public final CompletableFuture<Image> getImageAsync() {
+        return renderer.getImageAsync(index);
     }
 
     /**
-     * Scale image to a smaller size of this slide.
+     * Get the thumbnail of this slide, waiting for it to be rendered if it
+     * isn't ready yet.
      *
-     * @param originalImage source image to scale
-     * @param width desired width
-     * @param height desired height
-     * @return the resixed image
+     * @return the thumbnail of this slide, or null if it couldn't be rendered.
      */
-    private BufferedImage resizeImage(BufferedImage originalImage, int width, int height) {
-        int finalw = width;
-        int finalh = height;
-        double factor;
-        if (originalImage.getWidth() > originalImage.getHeight()) {
-            factor = ((double) originalImage.getHeight() / (double) originalImage.getWidth());
-            finalh = (int) (finalw * factor);
-        } else {
-            factor = ((double) originalImage.getWidth() / (double) originalImage.getHeight());
-            finalw = (int) (finalh * factor);
+    public final Image getThumbnail() {
+        try {
+            return getThumbnailAsync().join();
+        } catch (CompletionException | CancellationException ex) {
+            return null;
         }
+    }
 
-        BufferedImage scaledImage = new BufferedImage(finalw, finalh, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2 = scaledImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2.drawImage(originalImage, 0, 0, finalw, finalh, null);
-        g2.dispose();
-        return scaledImage;
+    /**
+     * Get the thumbnail of this slide as soon as it's been rendered.
+     *
+     * @return the thumbnail of this slide.
+     */
+    public final CompletableFuture<Image> getThumbnailAsync() {
+        return renderer.getThumbnail(index);
     }
 }
@@ -20,10 +20,10 @@ package org.quelea.data.powerpoint;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.List;
-import org.apache.poi.hslf.usermodel.HSLFSlide;
+import java.io.InputStream;
 import org.apache.poi.hslf.usermodel.HSLFSlideShow;
-import org.apache.poi.xslf.usermodel.XMLSlideShow;
+import org.apache.poi.sl.usermodel.SlideShow;
+import org.quelea.services.utils.SlideRenderer;
 
 /**
  * A presentation that can be displayed. At the moment represents a powerpoint
@@ -33,17 +33,25 @@ import org.apache.poi.xslf.usermodel.XMLSlideShow;
  */
 public class PPTPresentation implements Presentation {
 
-    private HSLFSlideShow slideshow;
-    private PresentationSlide[] slides;
+    private final SlideRenderer<SlideShow<?, ?>> renderer;
+    private final PresentationSlide[] slides;
 
     /**
-     * Create a presentation from a file.
+     * Create a presentation from a file. The slides are rendered as they're
+     * needed.
      *
      * @param file the file containing the presentation.
      */
     public PPTPresentation(String file) throws IOException {
-        slideshow = new HSLFSlideShow(new FileInputStream(new File(file)));
-        slides = makeSlides();
+        renderer = SlideShowSource.createRenderer(file, () -> {
+            try (InputStream in = new FileInputStream(new File(file))) {
+                return new HSLFSlideShow(in);
+            }
+        });
+        slides = new PresentationSlide[renderer.getSlideCount()];
+        for (int i = 0; i < slides.length; i++) {
+            slides[i] = new PresentationSlide(renderer, i);
+        }
     }
 
     /**
@@ -68,17 +76,21 @@ public class PPTPresentation implements Presentation {
     }
 
     /**
-     * Make the slides that go in this presentation, this is what takes time and
-     * should only be done once.
+     * Start rendering the slides from the given index onwards in the
+     * background.
      *
-     * @return all the slides.
+     * @param index the index of the first slide to render.
      */
-    private PresentationSlide[] makeSlides() {
-        List<HSLFSlide> lSlides = slideshow.getSlides();
-        PresentationSlide[] ret = new PresentationSlide[lSlides.size()];
-        for (int i = 0; i < lSlides.size(); i++) {
-            ret[i] = new PresentationSlide(lSlides.get(i), i + 1);
-        }
-        return ret;
+    @Override
+    public void prefetch(int index) {
+        renderer.prefetch(index);
+    }
+
+    /**
+     * Free up the resources used by this presentation.
+     */
+    @Override
+    public void dispose() {
+        renderer.dispose();
     }
 }
@@ -20,10 +20,10 @@ package org.quelea.data.powerpoint;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import org.apache.poi.sl.usermodel.SlideShow;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
+import org.quelea.services.utils.SlideRenderer;
 
 /**
  * A presentation that uses the newer PPTX file format.
@@ -32,17 +32,25 @@ import org.apache.poi.xslf.usermodel.XSLFSlide;
  */
 public class PPTXPresentation implements Presentation {
 
-    private XMLSlideShow slideshow;
-    private PresentationSlide[] slides;
+    private final SlideRenderer<SlideShow<?, ?>> renderer;
+    private final PresentationSlide[] slides;
 
     /**
-     * Create a new XML presentation.
+     * Create a presentation from a file. The slides are rendered as they're
+     * needed.
      *
      * @param file the file containing the presentation.
      */
     public PPTXPresentation(String file) throws IOException {
-        slideshow = new XMLSlideShow(new FileInputStream(new File(file)));
-        slides = makeSlides();
+        renderer = SlideShowSource.createRenderer(file, () -> {
+            try (InputStream in = new FileInputStream(new File(file))) {
+                return new XMLSlideShow(in);
+            }
+        });
+        slides = new PresentationSlide[renderer.getSlideCount()];
+        for (int i = 0; i < slides.length; i++) {
+            slides[i] = new PresentationSlide(renderer, i);
+        }
     }
 
     /**
@@ -67,19 +75,21 @@ public class PPTXPresentation implements Presentation {
     }
 
     /**
-     * Make the slides that go in this presentation, this is what takes time and
-     * should only be done once.
+     * Start rendering the slides from the given index onwards in the
+     * background.
      *
-     * @return all the slides.
+     * @param index the index of the first slide to render.
      */
-    private PresentationSlide[] makeSlides() {
-        List<XSLFSlide> lSlides = slideshow.getSlides();
-        ArrayList<PresentationSlide> ret = new ArrayList<>();
-        for (int i = 0; i < lSlides.size(); i++) {
-            if (lSlides.get(i) != null) {
-                ret.add(new PresentationSlide(lSlides.get(i), i + 1));
-            }
-        }
-        return ret.toArray(new PresentationSlide[ret.size()]);
+    @Override
+    public void prefetch(int index) {
+        renderer.prefetch(index);
+    }
+
+    /**
+     * Free up the resources used by this presentation.
+     */
+    @Override
+    public void dispose() {
+        renderer.dispose();
     }
 }
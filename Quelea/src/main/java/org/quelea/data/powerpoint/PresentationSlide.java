@@ -17,123 +17,75 @@
  */
 package org.quelea.data.powerpoint;
 
-import java.awt.Color;
-import java.awt.Dimension;
-import java.awt.Font;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.geom.AffineTransform;
-import java.awt.image.BufferedImage;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import javafx.embed.swing.SwingFXUtils;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
-import org.apache.poi.sl.usermodel.Slide;
-import org.apache.poi.sl.usermodel.SlideShow;
-import org.apache.poi.xslf.usermodel.XSLFSlide;
-import org.quelea.services.languages.LabelGrabber;
-import org.quelea.services.utils.LoggerUtils;
-import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.SlideRenderer;
 
 /**
- * A slide in a powerpoint presentation.
+ * A slide in a powerpoint presentation. The images of the slide are rendered
+ * by the presentation when they're needed rather than when the slide is
+ * created.
  *
  * @author Michael
  */
 public class PresentationSlide {
 
-    private static final Logger LOGGER = LoggerUtils.getLogger();
-    private WritableImage image;
-    private static final int WIDTH = 1920;
-    private static final int HEIGHT = 1080;
-    private static double scaleWidth = 0;
-    private static double scaleHeight = 0;
+    private final SlideRenderer<?> renderer;
+    private final int index;
 
     /**
      * Create a new presentation slide.
      *
-     * @param slide the underlying apache POI slide.
+     * @param renderer the renderer of the presentation the slide is in.
+     * @param index the index of the slide in the presentation.
      */
-    public PresentationSlide(Slide slide, int numSlide) {
-        SlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
-        }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-            slide.draw(g2);
-        } catch (Exception ex) {
-            if (QueleaProperties.get().getUsePP()) {
-                LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
-            } else {
-                throw ex;
-            }
-        }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
-        originalImage.flush();
-        originalImage = null;
+    PresentationSlide(SlideRenderer<?> renderer, int index) {
+        this.renderer = renderer;
+        this.index = index;
     }
 
     /**
-     * Create a new presentation slide.
+     * Get the image from this slide, waiting for it to be rendered if it
+     * isn't ready yet. This shouldn't be called on the FX thread.
      *
-     * @param slide the underlying apache POI slide.
+     * @return the image of this slide, or null if it couldn't be rendered.
      */
-    public PresentationSlide(XSLFSlide slide, int numSlide) {
-        org.apache.poi.xslf.usermodel.XMLSlideShow slideshow = slide.getSlideShow();
-        if (Math.abs(slideshow.getPageSize().getHeight() - HEIGHT) > 0.1) {
-            int adjustHeight = HEIGHT;
-            int adjustWidth = (int) ((adjustHeight / slideshow.getPageSize().getHeight()) * slideshow.getPageSize().getWidth());
-            scaleWidth = (double) adjustWidth / slideshow.getPageSize().getWidth();
-            scaleHeight = (double) adjustHeight / slideshow.getPageSize().getHeight();
-            slideshow.setPageSize(new Dimension(adjustWidth, adjustHeight));
-        }
-        BufferedImage originalImage = new BufferedImage((int) slideshow.getPageSize().getWidth(), (int) slideshow.getPageSize().getHeight(), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = originalImage.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        try {
-            g2.setTransform(AffineTransform.getScaleInstance(scaleWidth, scaleHeight));
-            slide.draw(g2);
-        } catch (NullPointerException ex) {
-            if (QueleaProperties.get().getUsePP()) {
-                LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
-                draw(g2, originalImage.getWidth(), originalImage.getHeight(), numSlide);
-            } else {
-                throw ex;
-            }
-        }
-        image = new WritableImage(originalImage.getWidth(), originalImage.getHeight());
-        SwingFXUtils.toFXImage(originalImage, image);
+    public final Image getImage() {
+        return renderer.getImage(index);
+    }
+
+    /**
+     * Get the image from this slide as soon as it's been rendered.
+     *
+     * @return the image of this slide, which is null if it couldn't be
+     * rendered.
+     */
+    public final CompletableFuture<Image> getImageAsync() {
+        return renderer.getImageAsync(index);
     }
 
-    private void draw(Graphics2D graphics, int width, int height, int num) {
-        String slideText = LabelGrabber.INSTANCE.getLabel("preview.failed");
-        graphics.setColor(new Color(174, 167, 159));
-        graphics.fillRect(0, 0, width, height);
-        graphics.setFont(new Font("Calibri", 0, 1000));
-        graphics.setColor(new Color(250, 250, 250));
-        while (graphics.getFontMetrics().stringWidth(slideText) > width - 1000) {
-            graphics.setFont(new Font("Calibri", 0, graphics.getFont().getSize() - 2));
+    /**
+     * Get the thumbnail of this slide, waiting for it to be rendered if it
+     * isn't ready yet.
+     *
+     * @return the thumbnail of this slide, or null if it couldn't be rendered.
+     */
+    public final Image getThumbnail() {
+        try {
+            return getThumbnailAsync().join();
+        } catch (CompletionException | CancellationException ex) {
+            return null;
         }
-        graphics.drawString(slideText, 10, height / 2 - graphics.getFontMetrics().getHeight() / 4);
     }
 
     /**
-     * Get the image from this slide.
+     * Get the thumbnail of this slide as soon as it's been rendered.
      *
-     * @return the image of this slide.
+     * @return the thumbnail of this slide.
      */
-    public final Image getImage() {
-        return image;
+    public final CompletableFuture<Image> getThumbnailAsync() {
+        return renderer.getThumbnail(index);
     }
 }
@@ -0,0 +1,132 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.data.powerpoint;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.poi.sl.usermodel.SlideShow;
+import org.quelea.services.languages.LabelGrabber;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+import org.quelea.services.utils.SlideRenderer;
+
+/**
+ * Loads and draws the slides of a powerpoint presentation for a
+ * SlideRenderer. Drawing a slide with POI is slow, so presentations are
+ * rendered with full size slides saved to disk, and with at most a couple of
+ * copies of the slide show loaded at once.
+ *
+ * @author Michael
+ */
+final class SlideShowSource implements SlideRenderer.Source<SlideShow<?, ?>> {
+
+    /**
+     * Loads a copy of the slide show from its file.
+     */
+    interface Loader {
+
+        SlideShow<?, ?> load() throws IOException;
+    }
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int FULL_HEIGHT = 1080;
+    private static final int MAX_COPIES = 2;
+    private final Loader loader;
+
+    private SlideShowSource(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Open a presentation and start rendering its thumbnails.
+     *
+     * @param file the file containing the presentation.
+     * @param loader loads a copy of the presentation from the file.
+     * @return the renderer for the presentation.
+     * @throws IOException if the presentation couldn't be loaded.
+     */
+    static SlideRenderer<SlideShow<?, ?>> createRenderer(String file, Loader loader) throws IOException {
+        return new SlideRenderer<>(file, new SlideShowSource(loader), MAX_COPIES, true);
+    }
+
+    @Override
+    public SlideShow<?, ?> load() throws IOException {
+        return loader.load();
+    }
+
+    @Override
+    public int getSlideCount(SlideShow<?, ?> slideshow) {
+        return slideshow.getSlides().size();
+    }
+
+    @Override
+    public BufferedImage render(SlideShow<?, ?> slideshow, int index, boolean thumbnail) {
+        Dimension pageSize = slideshow.getPageSize();
+        double scale;
+        if (thumbnail) {
+            scale = (double) QueleaProperties.get().getThumbnailSize() / pageSize.getWidth();
+        } else {
+            scale = FULL_HEIGHT / pageSize.getHeight();
+        }
+        int width = Math.max(1, (int) Math.round(pageSize.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(pageSize.getHeight() * scale));
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        try {
+            g2.setTransform(AffineTransform.getScaleInstance(scale, scale));
+            slideshow.getSlides().get(index).draw(g2);
+        } catch (RuntimeException ex) {
+            if (QueleaProperties.get().getUsePP()) {
+                LOGGER.log(Level.INFO, "Couldn't use library to generate thumbnail, using default");
+                g2.setTransform(new AffineTransform());
+                drawFailed(g2, width, height);
+            } else {
+                throw ex;
+            }
+        } finally {
+            g2.dispose();
+        }
+        return image;
+    }
+
+    private void drawFailed(Graphics2D graphics, int width, int height) {
+        String slideText = LabelGrabber.INSTANCE.getLabel("preview.failed");
+        graphics.setColor(new Color(174, 167, 159));
+        graphics.fillRect(0, 0, width, height);
+        graphics.setFont(new Font("Calibri", 0, 1000));
+        graphics.setColor(new Color(250, 250, 250));
+        while (graphics.getFontMetrics().stringWidth(slideText) > width - 1000 && graphics.getFont().getSize() > 2) {
+            graphics.setFont(new Font("Calibri", 0, graphics.getFont().getSize() - 2));
+        }
+        graphics.drawString(slideText, 10, height / 2 - graphics.getFontMetrics().getHeight() / 4);
+    }
+
+    @Override
+    public void close(SlideShow<?, ?> slideshow) throws IOException {
+        slideshow.close();
+    }
+}
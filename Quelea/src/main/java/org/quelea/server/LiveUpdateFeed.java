@@ -0,0 +1,340 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * A server-sent events feed of what's currently live. Rather than every
+ * client polling for the current lyrics, each one holds open a single
+ * connection and is sent an event only when the live content changes.
+ * <p/>
+ * The live content is checked once for all clients, and each change is
+ * given a new version number and encoded once into a payload that's written
+ * as is to every client.
+ * <p/>
+ * Each client has its own small queue of events waiting to be sent, written
+ * out by its own writer task, so a client that's stopped reading only holds
+ * up itself. A client that falls too far behind, or whose write has been
+ * stuck for too long, is dropped - it'll reconnect and pick up the latest
+ * version if it's still there.
+ * <p/>
+ * @author Michael
+ */
+public class LiveUpdateFeed {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final long CHECK_INTERVAL_MS = 100;
+    private static final long KEEP_ALIVE_INTERVAL_MS = 15000;
+    private static final long WRITE_TIMEOUT_MS = 30000;
+    private static final int MAX_QUEUED = 8;
+    private static final byte[] KEEP_ALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RETRY = "retry: 2000\n\n".getBytes(StandardCharsets.UTF_8);
+    private final Supplier<String> source;
+    private final Supplier<String> data;
+    private final List<Subscriber> subscribers;
+    private final ScheduledExecutorService checker;
+    private final ExecutorService writers;
+    private String lastState;
+    private long version;
+    private long lastCheck;
+    private byte[] payload;
+
+    /**
+     * Create a new live update feed.
+     * <p/>
+     * @param name the name of the feed, used to name its threads.
+     * @param source supplies the current state of the live content. A new
+     * version is sent whenever this changes.
+     * @param data supplies the data sent with each new version, or null if
+     * clients are only told the version so they can fetch what they need.
+     */
+    public LiveUpdateFeed(String name, Supplier<String> source, Supplier<String> data) {
+        this.source = source;
+        this.data = data;
+        subscribers = new CopyOnWriteArrayList<>();
+        checker = Executors.newSingleThreadScheduledExecutor(newThreadFactory(name + "-feed"));
+        writers = Executors.newCachedThreadPool(newThreadFactory(name + "-feed-writer"));
+        checker.scheduleWithFixedDelay(this::check, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        checker.scheduleWithFixedDelay(this::keepAlive, KEEP_ALIVE_INTERVAL_MS, KEEP_ALIVE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a thread factory for daemon threads with the given name prefix.
+     * <p/>
+     * @param name the name prefix of the threads.
+     * @return the thread factory.
+     */
+    static ThreadFactory newThreadFactory(String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Subscribe the client making this request to the feed. The response is
+     * left open, and the current version is sent straight away, even to a
+     * client that's reconnecting (it may have lost what it was showing.)
+     * Nothing is written on the calling thread.
+     * <p/>
+     * @param he the request to subscribe.
+     * @throws IOException if the response couldn't be started.
+     */
+    public void subscribe(HttpExchange he) throws IOException {
+        he.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        he.getResponseHeaders().set("Cache-Control", "no-cache, no-store, must-revalidate");
+        he.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(he);
+        //Queue the current version and subscribe together, so a change can't slip in between
+        synchronized (this) {
+            getVersion();
+            subscriber.send(RETRY);
+            if (payload != null) {
+                subscriber.send(payload);
+            }
+            subscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * Get the version of the live content. If it hasn't been checked
+     * recently, it's checked now (and any change sent to the clients), so
+     * this is always up to date but the live content is looked at no more
+     * often than the feed checks it anyway.
+     * <p/>
+     * @return the current version of the live content.
+     */
+    public synchronized long getVersion() {
+        if ((lastState == null || System.currentTimeMillis() - lastCheck >= CHECK_INTERVAL_MS) && update()) {
+            broadcast(payload);
+        }
+        return version;
+    }
+
+    /**
+     * Stop the feed and disconnect all the clients.
+     */
+    public void stop() {
+        checker.shutdownNow();
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Check whether the live content has changed, and send the new version
+     * to every client if it has. Nothing is checked here while there aren't
+     * any clients, it's then only checked when the version is asked for.
+     */
+    private void check() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        byte[] newPayload;
+        synchronized (this) {
+            if (!update()) {
+                return;
+            }
+            newPayload = payload;
+        }
+        broadcast(newPayload);
+    }
+
+    /**
+     * Update the state, and the version and payload if it's changed.
+     * <p/>
+     * @return true if the state changed, false otherwise.
+     */
+    private synchronized boolean update() {
+        lastCheck = System.currentTimeMillis();
+        String state;
+        String eventData = null;
+        try {
+            state = source.get();
+            if (state != null && !state.equals(lastState) && data != null) {
+                eventData = data.get();
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't get live state", ex);
+            return false;
+        }
+        if (state == null) {
+            state = "";
+        }
+        if (state.equals(lastState)) {
+            return false;
+        }
+        lastState = state;
+        version++;
+        payload = encode(version, eventData == null ? Long.toString(version) : eventData);
+        return true;
+    }
+
+    /**
+     * Send a keep alive to every client, dropping any whose write has been
+     * stuck for too long first.
+     */
+    private void keepAlive() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isStalled(now)) {
+                LOGGER.log(Level.INFO, "Dropping live feed client, it hasn''t read anything for {0}s", (now - subscriber.writeStarted) / 1000);
+                drop(subscriber);
+            }
+        }
+        broadcast(KEEP_ALIVE);
+    }
+
+    private void broadcast(byte[] bytes) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.send(bytes)) {
+                if (!subscriber.closed) {
+                    LOGGER.log(Level.INFO, "Dropping live feed client, it's too far behind");
+                }
+                drop(subscriber);
+            }
+        }
+    }
+
+    /**
+     * Stop sending to a client and disconnect it. Closing may block behind a
+     * stuck write, so it's done on a writer thread.
+     */
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.closed = true;
+            writers.execute(subscriber::close);
+        }
+    }
+
+    /**
+     * Encode an event, with each line of the data on its own data field.
+     */
+    private static byte[] encode(long version, String data) {
+        StringBuilder event = new StringBuilder();
+        event.append("id: ").append(version).append('\n');
+        for (String line : data.split("\r\n|\r|\n", -1)) {
+            event.append("data: ").append(line).append('\n');
+        }
+        event.append('\n');
+        return event.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A client subscribed to the feed, with the events waiting to be sent to
+     * it. At most one writer task drains the queue at a time.
+     */
+    private class Subscriber {
+
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final BlockingQueue<byte[]> queue;
+        private final AtomicBoolean draining;
+        private volatile boolean closed;
+        private volatile long writeStarted;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+            draining = new AtomicBoolean();
+        }
+
+        /**
+         * Queue some bytes to be sent to this client.
+         * <p/>
+         * @param bytes the bytes to send.
+         * @return true if they were queued, false if the client's been
+         * closed or its queue is full.
+         */
+        boolean send(byte[] bytes) {
+            if (closed || !queue.offer(bytes)) {
+                return false;
+            }
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+            return true;
+        }
+
+        /**
+         * Determine whether a write to this client has been stuck for too
+         * long.
+         */
+        boolean isStalled(long now) {
+            long started = writeStarted;
+            return started != 0 && now - started > WRITE_TIMEOUT_MS;
+        }
+
+        private void drain() {
+            while (true) {
+                byte[] bytes = queue.poll();
+                if (bytes == null) {
+                    draining.set(false);
+                    //Something may have been queued after polling but before draining was cleared
+                    if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (closed) {
+                    queue.clear();
+                    continue;
+                }
+                writeStarted = System.currentTimeMillis();
+                try {
+                    out.write(bytes);
+                    out.flush();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Live feed client disconnected", ex);
+                    drop(this);
+                    closed = true;
+                } finally {
+                    writeStarted = 0;
+                }
+            }
+        }
+
+        void close() {
+            exchange.close();
+        }
+    }
+}
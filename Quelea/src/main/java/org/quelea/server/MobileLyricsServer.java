@@ -30,9 +30,11 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.quelea.data.bible.BibleBook;
@@ -60,11 +62,15 @@ public class MobileLyricsServer {
 
     private static final boolean USE_CACHE = true;
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int SERVER_THREADS = 8;
     private final HttpServer server;
-    private boolean running;
+    private final ExecutorService executor;
+    private final LiveUpdateFeed feed;
+    private final ResponseCache responses;
+    private volatile boolean running;
     private String pageContent;
     private final Map<String, byte[]> fileCache;
-    private String text = "";
+    private volatile String text = "";
 
     /**
      * Create a new mobile lyrics server on a specified port. The port must not
@@ -74,7 +80,7 @@ public class MobileLyricsServer {
      * @throws IOException if something goes wrong.
      */
     public MobileLyricsServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        fileCache = new ConcurrentHashMap<>();
         server = HttpServer.create(new InetSocketAddress(port), 0);
         server.createContext("/", new RootHandler());
         server.createContext("/lyrics", new LyricsHandler());
@@ -84,6 +90,7 @@ public class MobileLyricsServer {
         server.createContext("/songtranslations", new SongTranslationsHandler());
         server.createContext("/gettranslation", new SongTranslationsHandler());
         server.createContext("/livetext", new LiveTextHandler());
+        server.createContext("/feed", new FeedHandler());
         server.createContext("/jscolor.js", new FileHandler("icons/jscolor.js"));
         server.createContext("/arrow.gif", new FileHandler("icons/arrow.gif"));
         server.createContext("/gear.png", new FileHandler("icons/gear.png"));
@@ -91,7 +98,10 @@ public class MobileLyricsServer {
         server.createContext("/cross.gif", new FileHandler("icons/cross.gif"));
         server.createContext("/hs.png", new FileHandler("icons/hs.png"));
         server.createContext("/hv.png", new FileHandler("icons/hv.png"));
-        server.setExecutor(null);
+        feed = new LiveUpdateFeed("mobilelyrics", this::getLiveState, this::getFeedText);
+        responses = new ResponseCache();
+        executor = Executors.newFixedThreadPool(SERVER_THREADS, LiveUpdateFeed.newThreadFactory("mobilelyrics"));
+        server.setExecutor(executor);
     }
 
     /**
@@ -111,7 +121,10 @@ public class MobileLyricsServer {
     public void stop() {
         if (server != null) {
             running = false;
+            feed.stop();
             server.stop(0);
+            executor.shutdownNow();
+            LOGGER.log(Level.INFO, "Mobile lyrics server responses: {0}", responses);
         }
     }
 
@@ -143,12 +156,8 @@ public class MobileLyricsServer {
                 pageContent = readFile("server/defaultpage.htm");
                 pageContent = sortLabels(pageContent);
             }
-            byte[] bytes = pageContent.getBytes(Charset.forName("UTF-8"));
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            final String content = pageContent;
+            responses.sendText(t, "/", content.hashCode(), () -> content);
         }
 
     }
@@ -182,17 +191,10 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response;
             if (t.getRequestURI().toString().contains("all")) {
-                response = allLyrics();
+                responses.sendText(t, "/lyrics/all", feed.getVersion(), MobileLyricsServer.this::allLyrics);
             } else {
-                response = getLyrics(false);
-            }
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
+                responses.sendText(t, "/lyrics", feed.getVersion(), () -> getLyrics(false));
             }
         }
     }
@@ -201,6 +203,10 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
+            responses.sendText(t, "/chordsv2", feed.getVersion(), this::getChords);
+        }
+
+        private String getChords() {
             String[] arr = getRawLiveLyrics();
             List<Chord> chords = new ArrayList<>();
             StringBuilder html = new StringBuilder();
@@ -214,13 +220,7 @@ public class MobileLyricsServer {
                     chords = null;
                 }
             }
-            
-            byte[] bytes = html.toString().getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            return html.toString();
         }
         
         private String mergeChords(String line, List<Chord> chords) {
@@ -264,13 +264,7 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getLyrics(true);
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            responses.sendText(t, "/chords", feed.getVersion(), () -> getLyrics(true));
         }
     }
 
@@ -278,13 +272,15 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getText();
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            responses.sendText(t, "/livetext", feed.getVersion(), MobileLyricsServer.this::getText);
+        }
+    }
+
+    private class FeedHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            feed.subscribe(t);
         }
     }
 
@@ -292,13 +288,7 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = getTitle();
-            byte[] bytes = response.getBytes("UTF-8");
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            responses.sendText(t, "/title", feed.getVersion(), MobileLyricsServer.this::getTitle);
         }
     }
 
@@ -306,23 +296,27 @@ public class MobileLyricsServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
+            responses.sendText(he, he.getRequestURI().toString(), feed.getVersion(), () -> getTranslations(he));
+        }
+
+        private String getTranslations(HttpExchange he) {
             String response = "";
-            LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
-            if (running && lp.getDisplayable() instanceof TextDisplayable) {
-                if (he.getRequestURI().toString().contains("/songtranslations")) {
-                    response = listSongTranslations(he);
-                } else {
-                    response = getSongTranslation(he);
-                }
-                if (getLyrics(false).equals("")) {
-                    response = "";
+            try {
+                LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
+                if (running && lp.getDisplayable() instanceof TextDisplayable) {
+                    if (he.getRequestURI().toString().contains("/songtranslations")) {
+                        response = listSongTranslations(he);
+                    } else {
+                        response = getSongTranslation(he);
+                    }
+                    if (getLyrics(false).equals("")) {
+                        response = "";
+                    }
                 }
+            } catch (UnsupportedEncodingException ex) {
+                LOGGER.log(Level.WARNING, "Error getting translations", ex);
             }
-            he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            he.sendResponseHeaders(200, response.getBytes(Charset.forName("UTF-8")).length);
-            OutputStream os = he.getResponseBody();
-            os.write(response.getBytes(Charset.forName("UTF-8")));
-            os.close();
+            return response;
         }
     }
     
@@ -378,6 +372,30 @@ public class MobileLyricsServer {
         }
     }
 
+    /**
+     * Get the state of everything live that's sent to clients, used to tell
+     * when it changes.
+     * <p>
+     * @return the current live state.
+     */
+    private String getLiveState() {
+        return getLyrics(true) + "\u0000" + getText() + "\u0000" + getTitle();
+    }
+
+    /**
+     * Get the text that's sent out on the live feed - the current lyrics, or
+     * the live text if there aren't any.
+     * <p>
+     * @return the text to send on the live feed.
+     */
+    private String getFeedText() {
+        String lyrics = getLyrics(false);
+        if (lyrics.isEmpty()) {
+            return getText();
+        }
+        return lyrics;
+    }
+
     public String allLyrics() {
         StringBuilder sb = new StringBuilder();
         sb.append("<div id=\"outer\">");
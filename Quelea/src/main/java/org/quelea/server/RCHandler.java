@@ -485,10 +485,11 @@ public class RCHandler {
                 try {
                     BufferedImage image;
                     int slide = Integer.parseInt(targetPath.replace("/slide", "").replace(".png", ""));
+                    //Presentations and PDFs are only shown small on the remote, so their thumbnails save rendering the full slide
                     if (d instanceof PresentationDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PresentationDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
+                        image = SwingFXUtils.fromFXImage(((PresentationDisplayable) d).getPresentation().getSlide(slide - 1).getThumbnail(), null);
                     } else if (d instanceof PdfDisplayable) {
-                        image = SwingFXUtils.fromFXImage(((PdfDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
+                        image = SwingFXUtils.fromFXImage(((PdfDisplayable) d).getPresentation().getSlide(slide - 1).getThumbnail(), null);
                     } else {
                         image = SwingFXUtils.fromFXImage(((ImageGroupDisplayable) d).getPresentation().getSlide(slide - 1).getImage(), null);
                     }
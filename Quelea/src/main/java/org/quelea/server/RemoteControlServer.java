@@ -43,6 +43,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -79,8 +82,12 @@ public class RemoteControlServer {
 
     private static final boolean USE_CACHE = true;
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int SERVER_THREADS = 4;
     private final HttpServer server;
-    private boolean running;
+    private final ExecutorService executor;
+    private final LiveUpdateFeed feed;
+    private final ResponseCache responses;
+    private volatile boolean running;
     private String pageContent;
     private final Map<String, byte[]> fileCache;
     public int count = 0;
@@ -94,7 +101,7 @@ public class RemoteControlServer {
      * @throws IOException if something goes wrong.
      */
     public RemoteControlServer(int port) throws IOException {
-        fileCache = new HashMap<>();
+        fileCache = new ConcurrentHashMap<>();
         server = HttpServer.create(new InetSocketAddress(port), 0);
         HttpContext rootcontext = server.createContext("/", new RootHandler());
         server.createContext("/logout", new LogoutHandler());
@@ -110,6 +117,7 @@ public class RemoteControlServer {
         server.createContext("/chords", new ChordsHandler());
         server.createContext("/status", new StatusHandler());
         server.createContext("/schedule", new ScheduleHandler());
+        server.createContext("/feed", new FeedHandler());
         server.createContext("/songsearch", new SongSearchHandler());
         server.createContext("/search", new DatabaseSearchHandler());
         server.createContext("/song", new SongDisplayHandler());
@@ -133,7 +141,10 @@ public class RemoteControlServer {
         server.createContext("/slides", new PresentationSlidesHandler());
         server.createContext("/transpose", new TransposeSongHandler());
         rootcontext.getFilters().add(new ParameterFilter());
-        server.setExecutor(null);
+        feed = new LiveUpdateFeed("remotecontrol", this::getFeedState, null);
+        responses = new ResponseCache();
+        executor = Executors.newFixedThreadPool(SERVER_THREADS, LiveUpdateFeed.newThreadFactory("remotecontrol"));
+        server.setExecutor(executor);
     }
 
     /**
@@ -153,7 +164,10 @@ public class RemoteControlServer {
     public void stop() {
         if (server != null) {
             running = false;
+            feed.stop();
             server.stop(0);
+            executor.shutdownNow();
+            LOGGER.log(Level.INFO, "Remote control server responses: {0}", responses);
         }
     }
 
@@ -448,12 +462,7 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            byte[] bytes = RCHandler.schedule().getBytes(Charset.forName("UTF-8"));
-            he.getResponseHeaders().set("Cache-Control", "no-cache, no-store, must-revalidate");
-            he.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = he.getResponseBody()) {
-                os.write(bytes);
-            }
+            responses.sendText(he, "/schedule", feed.getVersion(), RCHandler::schedule);
         }
     }
 
@@ -620,31 +629,64 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange he) throws IOException {
-            MainToolbar toolbar = QueleaApp.get().getMainWindow().getMainToolbar();
-            RecordingsHandler recHandler = toolbar.getRecordButtonHandler().getRecordingsHandler();
             if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
-                StringBuilder sb = new StringBuilder();
-                sb.append(RCHandler.getLogo()).append(",");
-                sb.append(RCHandler.getBlack()).append(",");
-                sb.append(RCHandler.getClear()).append(",");
-                sb.append(RCHandler.videoStatus()).append(",");
-                if (toolbar.getRecordButtonHandler() != null && recHandler != null) {
-                    sb.append(recHandler.getIsRecording());
-                } else {
-                    sb.append("false");
-                }
-                byte[] bytes = sb.toString().getBytes(Charset.forName("UTF-8"));
-                he.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-                he.sendResponseHeaders(200, bytes.length);
-                try (OutputStream os = he.getResponseBody()) {
-                    os.write(bytes);
-                }
+                responses.sendText(he, "/status", feed.getVersion(), RemoteControlServer.this::getStatus);
             } else {
                 reload(he);
             }
         }
     }
 
+    //Tells clients when the lyrics, status or schedule change
+    private class FeedHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange he) throws IOException {
+            if (RCHandler.isLoggedOn(he.getRemoteAddress().getAddress().toString())) {
+                feed.subscribe(he);
+            } else {
+                reload(he);
+            }
+        }
+    }
+
+    /**
+     * Get the status of the logo, black, clear, video and record buttons.
+     * <p/>
+     *
+     * @return the button status, separated by commas.
+     */
+    private String getStatus() {
+        MainToolbar toolbar = QueleaApp.get().getMainWindow().getMainToolbar();
+        RecordingsHandler recHandler = toolbar.getRecordButtonHandler().getRecordingsHandler();
+        StringBuilder sb = new StringBuilder();
+        sb.append(RCHandler.getLogo()).append(",");
+        sb.append(RCHandler.getBlack()).append(",");
+        sb.append(RCHandler.getClear()).append(",");
+        sb.append(RCHandler.videoStatus()).append(",");
+        if (toolbar.getRecordButtonHandler() != null && recHandler != null) {
+            sb.append(recHandler.getIsRecording());
+        } else {
+            sb.append("false");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get everything the remote control page shows that can change without
+     * the page doing anything, so the page can be told when to update. This
+     * is also the version that cached responses are built from.
+     * <p/>
+     *
+     * @return the current state of the lyrics, buttons and schedule.
+     */
+    private String getFeedState() {
+        if (!checkInitialised()) {
+            return "";
+        }
+        return getLiveLyrics() + "\u0000" + lyrics(true) + "\u0000" + getStatus() + "\u0000" + RCHandler.schedule();
+    }
+
     //Handles clicking on a section
     private class SectionHandler implements HttpHandler {
 
@@ -791,56 +833,60 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
-            String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
-            if (d instanceof TextDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
-                response += lyrics(false);
-            } else if (d instanceof MultimediaDisplayable) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
-                response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            } else if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
-                StringBuilder sb = new StringBuilder();
-                sb.append("\n<html><i>").append(LabelGrabber.INSTANCE.getLabel("currently.displaying.text")).append(": ").append(d.getPreviewText()).append("<br/>" + "</i>");
-                int numberOfImages;
+            responses.sendText(t, "/lyrics", feed.getVersion(), RemoteControlServer.this::getLiveLyrics);
+        }
+    }
+
+    /**
+     * Get the lyrics, or the slides, of whatever is currently live.
+     * <p/>
+     *
+     * @return the live lyrics as HTML.
+     */
+    private String getLiveLyrics() {
+        String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        Displayable d = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getDisplayable();
+        if (d instanceof TextDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
+            response += lyrics(false);
+        } else if (d instanceof MultimediaDisplayable) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/>" + "</i>";
+            response += "<button type=\"button\" onclick=\"play();\" id=\"playbutton\">" + LabelGrabber.INSTANCE.getLabel("play") + "</button><br/><br/>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
+        } else if (d instanceof PresentationDisplayable || d instanceof PdfDisplayable || d instanceof ImageGroupDisplayable) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n<html><i>").append(LabelGrabber.INSTANCE.getLabel("currently.displaying.text")).append(": ").append(d.getPreviewText()).append("<br/>" + "</i>");
+            int numberOfImages;
+            if (d instanceof PresentationDisplayable) {
+                numberOfImages = ((PresentationDisplayable) d).getPresentation().getSlides().length;
+            } else if (d instanceof PdfDisplayable) {
+                numberOfImages = ((PdfDisplayable) d).getPresentation().getSlides().length;
+            } else {
+                numberOfImages = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
+            }
+            for (int i = 0; i < numberOfImages; i++) {
+                int currentIndex;
                 if (d instanceof PresentationDisplayable) {
-                    numberOfImages = ((PresentationDisplayable) d).getPresentation().getSlides().length;
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPresentationPanel().getCurrentIndex() - 1;
                 } else if (d instanceof PdfDisplayable) {
-                    numberOfImages = ((PdfDisplayable) d).getPresentation().getSlides().length;
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPdfPanel().getCurrentIndex() - 1;
                 } else {
-                    numberOfImages = ((ImageGroupDisplayable) d).getPresentation().getSlides().length;
+                    currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getImageGroupPanel().getCurrentIndex() - 1;
                 }
-                for (int i = 0; i < numberOfImages; i++) {
-                    int currentIndex;
-                    if (d instanceof PresentationDisplayable) {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPresentationPanel().getCurrentIndex() - 1;
-                    } else if (d instanceof PdfDisplayable) {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getPdfPanel().getCurrentIndex() - 1;
-                    } else {
-                        currentIndex = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel().getImageGroupPanel().getCurrentIndex() - 1;
-                    }
-                    if (i == currentIndex) {
-                        sb.append("<div class=\"inner current\">");
-                    } else {
-                        sb.append("<div class=\"inner\">");
-                    }
-                    sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".png\" style=\"width:192px;height:108px;\">");
-                    sb.append("<br/>Slide ").append(i + 1).append("</p></div><br/><br/>");
+                if (i == currentIndex) {
+                    sb.append("<div class=\"inner current\">");
+                } else {
+                    sb.append("<div class=\"inner\">");
                 }
-                response = sb.append("\n</html>").toString();
-            } else if (d != null) {
-                response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/><br/>" + "</i>";
-                response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
-            }
-            byte[] bytes = response.getBytes("UTF-8");
-
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
+                sb.append("<p class=\"empty\" onclick=\"section(").append(i).append(");\"><img src=\"/slides/slide").append(i + 1).append(".png\" style=\"width:192px;height:108px;\">");
+                sb.append("<br/>Slide ").append(i + 1).append("</p></div><br/><br/>");
             }
+            response = sb.append("\n</html>").toString();
+        } else if (d != null) {
+            response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + d.getPreviewText() + "<br/><br/>" + "</i>";
+            response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
         }
+        return response;
     }
 
     //Takes the chords (if there are any) and inserts them into the page
@@ -848,6 +894,10 @@ public class RemoteControlServer {
 
         @Override
         public void handle(HttpExchange t) throws IOException {
+            responses.sendText(t, "/chords", feed.getVersion(), this::getChords);
+        }
+
+        private String getChords() {
             String response = "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
             LivePanel lp = QueleaApp.get().getMainWindow().getMainPanel().getLivePanel();
             if (lp.getDisplayable() instanceof TextDisplayable) {
@@ -861,13 +911,7 @@ public class RemoteControlServer {
                 response = "<i>" + LabelGrabber.INSTANCE.getLabel("currently.displaying.text") + ": " + lp.getDisplayable().getPreviewText() + "<br/><br/>" + "</i>";
                 response += "<i>" + LabelGrabber.INSTANCE.getLabel("remote.empty.lyrics") + "</i>";
             }
-            byte[] bytes = response.getBytes("UTF-8");
-
-            t.getResponseHeaders().add("Cache-Control", "no-cache, no-store, must-revalidate");
-            t.sendResponseHeaders(200, bytes.length);
-            try (OutputStream os = t.getResponseBody()) {
-                os.write(bytes);
-            }
+            return response;
         }
     }
 
@@ -0,0 +1,209 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import org.quelea.services.utils.LRUCache;
+
+/**
+ * A cache of ready to send responses. Each response is built once per version
+ * of the content it's made from, and kept both as is and gzipped. Responses
+ * carry an ETag, so a client that already has the current content is sent a
+ * 304 with no body.
+ * <p/>
+ * @author Michael
+ */
+public class ResponseCache {
+
+    private static final int MAX_RESPONSES = 100;
+    private static final int MIN_GZIP_LENGTH = 256;
+    private final Map<String, CachedResponse> responses;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong notModified;
+    private final AtomicLong bytesSent;
+
+    /**
+     * Create a new, empty, response cache.
+     */
+    public ResponseCache() {
+        responses = Collections.synchronizedMap(new LRUCache<>(MAX_RESPONSES));
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        notModified = new AtomicLong();
+        bytesSent = new AtomicLong();
+    }
+
+    /**
+     * Send a text response, building it only if it isn't cached for this
+     * version.
+     * <p/>
+     * @param he the request to respond to.
+     * @param key the key of the response, which must cover everything the
+     * response depends on other than the version.
+     * @param version the version of the content the response is built from.
+     * @param content builds the response text.
+     * @throws IOException if the response couldn't be sent.
+     */
+    public void sendText(HttpExchange he, String key, long version, Supplier<String> content) throws IOException {
+        send(he, key, version, () -> content.get().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a response, building it only if it isn't cached for this version.
+     * <p/>
+     * @param he the request to respond to.
+     * @param key the key of the response, which must cover everything the
+     * response depends on other than the version.
+     * @param version the version of the content the response is built from.
+     * @param content builds the response body.
+     * @throws IOException if the response couldn't be sent.
+     */
+    public void send(HttpExchange he, String key, long version, Supplier<byte[]> content) throws IOException {
+        CachedResponse response = responses.get(key);
+        if (response == null || response.version != version) {
+            misses.incrementAndGet();
+            response = new CachedResponse(version, content.get());
+            responses.put(key, response);
+        } else {
+            hits.incrementAndGet();
+        }
+        he.getResponseHeaders().set("Cache-Control", "no-cache");
+        he.getResponseHeaders().set("ETag", response.etag);
+        he.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (matches(he.getRequestHeaders().getFirst("If-None-Match"), response.etag)) {
+            notModified.incrementAndGet();
+            he.sendResponseHeaders(304, -1);
+            he.close();
+            return;
+        }
+        byte[] bytes = response.identity;
+        String acceptEncoding = he.getRequestHeaders().getFirst("Accept-Encoding");
+        if (response.gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            he.getResponseHeaders().set("Content-Encoding", "gzip");
+            bytes = response.gzip;
+        }
+        he.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = he.getResponseBody()) {
+            os.write(bytes);
+        }
+        bytesSent.addAndGet(bytes.length);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of responses sent from the cache.
+     * <p/>
+     * @return the number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of responses that had to be built.
+     * <p/>
+     * @return the number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of requests answered with a 304.
+     * <p/>
+     * @return the number of not modified responses.
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Get the number of response body bytes sent.
+     * <p/>
+     * @return the number of bytes sent.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", not modified=" + getNotModified() + ", bytes sent=" + getBytesSent();
+    }
+
+    /**
+     * A response ready to send.
+     */
+    private static class CachedResponse {
+
+        private final long version;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final String etag;
+
+        CachedResponse(long version, byte[] identity) {
+            this.version = version;
+            this.identity = identity;
+            CRC32 crc = new CRC32();
+            crc.update(identity);
+            //Based on the content rather than the version, so content that changes back doesn't need resending
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(identity.length) + "\"";
+            this.gzip = compress(identity);
+        }
+
+        private static byte[] compress(byte[] bytes) {
+            if (bytes.length < MIN_GZIP_LENGTH) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(bytes);
+            } catch (IOException ex) {
+                return null;
+            }
+            byte[] compressed = out.toByteArray();
+            return compressed.length < bytes.length ? compressed : null;
+        }
+    }
+}
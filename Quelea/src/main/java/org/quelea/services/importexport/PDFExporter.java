@@ -17,14 +17,22 @@
  */
 package org.quelea.services.importexport;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
@@ -89,19 +97,8 @@ public class PDFExporter implements Exporter {
         final List<SongDisplayable> songDisplayablesThreadSafe = new ArrayList<>(songDisplayables);
         new Thread() {
             public void run() {
-                final HashSet<String> names = new HashSet<>();
                 try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file), Charset.forName("UTF-8"))) {
-                    for (int i = 0; i < songDisplayablesThreadSafe.size(); i++) {
-                        SongDisplayable song = songDisplayablesThreadSafe.get(i);
-                        String name = sanitise(song.getTitle()) + ".pdf";
-                        while (names.contains(name)) {
-                            name = Utils.incrementExtension(name, "pdf");
-                        }
-                        names.add(name);
-                        out.putNextEntry(new ZipEntry(name));
-                        out.write(getPDF(song, printChords));
-                        panel.setProgress((double) i / songDisplayablesThreadSafe.size());
-                    }
+                    writeSongs(out, songDisplayablesThreadSafe, printChords, panel);
                     panel.done();
                 } catch (IOException ex) {
                     LOGGER.log(Level.WARNING, "Couldn't export PDF songs", ex);
@@ -110,6 +107,61 @@ public class PDFExporter implements Exporter {
         }.start();
     }
 
+    /**
+     * Write a PDF of each song into a zip file, in order. The songs are
+     * rendered on several threads at once, but no more than twice as many as
+     * there are threads are rendered ahead of the one being written, so a big
+     * export doesn't hold every PDF in memory.
+     *
+     * @param out the zip file to write to.
+     * @param songs the songs to write.
+     * @param printChords true if chords should be printed, false otherwise.
+     * @param panel the status panel to show progress on, or null if none.
+     * @throws IOException if the zip file couldn't be written to.
+     */
+    public static void writeSongs(ZipOutputStream out, List<SongDisplayable> songs, final boolean printChords, StatusPanel panel) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "pdf-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<byte[]>> rendering = new ArrayDeque<>();
+            Set<String> names = new HashSet<>();
+            int next = 0;
+            for (int i = 0; i < songs.size(); i++) {
+                while (next < songs.size() && rendering.size() < threads * 2) {
+                    final SongDisplayable song = songs.get(next++);
+                    rendering.add(executor.submit(() -> getPDF(song, printChords)));
+                }
+                String name = sanitise(songs.get(i).getTitle()) + ".pdf";
+                while (names.contains(name)) {
+                    name = Utils.incrementExtension(name, "pdf");
+                }
+                names.add(name);
+                out.putNextEntry(new ZipEntry(name));
+                out.write(getResult(rendering.poll()));
+                if (panel != null) {
+                    panel.setProgress((double) i / songs.size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] getResult(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted exporting PDF songs");
+        } catch (ExecutionException ex) {
+            throw new IOException("Couldn't render PDF song", ex.getCause());
+        }
+    }
+
     public static String sanitise(String name) {
         name = name.replace(":", "");
         name = name.replace("/", "");
@@ -125,17 +177,14 @@ public class PDFExporter implements Exporter {
      * @return the bytes that make up a PDF file for each song.
      */
     public static byte[] getPDF(SongDisplayable song, boolean printChords) {
+        if (song == null) {
+            return new byte[0];
+        }
         song.setPrintChords(printChords);
-        File temp = null;
         try {
-            temp = File.createTempFile("queleasong", ".pdf");
-            temp.deleteOnExit();
-            if (song == null) {
-                return new byte[0];
-            } else {
-                SongPDFPrinter.INSTANCE.print(song, temp, false);
-                return Files.readAllBytes(temp.toPath());
-            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SongPDFPrinter.INSTANCE.print(song, out, false);
+            return out.toByteArray();
         } catch (IOException ex) {
             LOGGER.log(Level.WARNING, "Couldn't get PDF bytes for song", ex);
             return new byte[0];
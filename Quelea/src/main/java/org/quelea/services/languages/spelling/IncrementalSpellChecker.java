@@ -0,0 +1,210 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.languages.spelling;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import org.quelea.services.utils.LineTypeChecker;
+
+/**
+ * Checks the spelling of a text area in the background as it's edited,
+ * without re-checking the whole text on every change.
+ * <p/>
+ * The result of checking each line is kept against the line's text, so
+ * after an edit only the lines that changed need checking again - the rest
+ * are looked up. All text areas share one worker thread. If the text changes
+ * again before the worker gets to it, only the latest text is checked. Each
+ * check's result is handed to the FX thread in one go.
+ * <p/>
+ * @author Michael
+ */
+final class IncrementalSpellChecker {
+
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "spell-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Speller speller;
+    private final long fullCheckDelay;
+    private final Consumer<Boolean> listener;
+    private final AtomicReference<Request> pending;
+    private Map<String, LineResult> lineResults;
+    private volatile boolean invalidated;
+    private volatile int latestChange;
+    private ScheduledFuture<?> fullCheck;
+
+    private static final class Request {
+
+        private final String text;
+        private final boolean checkLastWord;
+
+        private Request(String text, boolean checkLastWord) {
+            this.text = text;
+            this.checkLastWord = checkLastWord;
+        }
+    }
+
+    private static final class LineResult {
+
+        private static final LineResult EMPTY = new LineResult(false, true, true);
+        private final boolean hasWords;
+        private final boolean ok;
+        private final boolean okWithoutLastWord;
+
+        private LineResult(boolean hasWords, boolean ok, boolean okWithoutLastWord) {
+            this.hasWords = hasWords;
+            this.ok = ok;
+            this.okWithoutLastWord = okWithoutLastWord;
+        }
+    }
+
+    /**
+     * Create a new checker.
+     * <p/>
+     * @param speller the speller to check words with.
+     * @param fullCheckDelay how long after the last change to check the text
+     * again including the last word, in milliseconds.
+     * @param listener the listener to tell whether the spelling is ok after
+     * each check, on the FX thread.
+     */
+    IncrementalSpellChecker(Speller speller, long fullCheckDelay, Consumer<Boolean> listener) {
+        this.speller = speller;
+        this.fullCheckDelay = fullCheckDelay;
+        this.listener = listener;
+        pending = new AtomicReference<>();
+        lineResults = new HashMap<>();
+    }
+
+    /**
+     * Tell the checker the text has been edited. The text is checked straight
+     * away without the last word (which may be half typed), then again with
+     * it once there have been no more edits for a while. Must be called on
+     * the FX thread.
+     * <p/>
+     * @param text the new text.
+     */
+    void textChanged(final String text) {
+        final int change = ++latestChange;
+        request(new Request(text, false));
+        if (fullCheck != null) {
+            fullCheck.cancel(false);
+        }
+        fullCheck = WORKER.schedule(() -> {
+            if (change == latestChange) {
+                request(new Request(text, true));
+            }
+        }, fullCheckDelay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Check the whole text again from scratch, forgetting previous results -
+     * for when the dictionary or the words being ignored have changed.
+     * <p/>
+     * @param text the text.
+     * @param checkLastWord true if the last word should be checked, false
+     * otherwise.
+     */
+    void recheck(String text, boolean checkLastWord) {
+        invalidated = true;
+        request(new Request(text, checkLastWord));
+    }
+
+    private void request(Request request) {
+        if (pending.getAndSet(request) == null) {
+            WORKER.execute(this::run);
+        }
+    }
+
+    private void run() {
+        Request request = pending.getAndSet(null);
+        if (request == null) {
+            return;
+        }
+        final boolean ok = check(request);
+        Platform.runLater(() -> listener.accept(ok));
+    }
+
+    /**
+     * Check the text, looking up any lines that are unchanged since the last
+     * check. Only ever called on the worker thread.
+     */
+    private boolean check(Request request) {
+        if (invalidated) {
+            invalidated = false;
+            lineResults.clear();
+        }
+        Map<String, LineResult> newResults = new HashMap<>();
+        boolean ok = true;
+        LineResult lastLine = null;
+        for (String line : request.text.split("\n")) {
+            LineResult result = newResults.get(line);
+            if (result == null) {
+                result = lineResults.get(line);
+                if (result == null) {
+                    result = checkLine(line);
+                }
+                newResults.put(line, result);
+            }
+            if (result.hasWords) {
+                if (lastLine != null && !lastLine.ok) {
+                    ok = false;
+                }
+                lastLine = result;
+            }
+        }
+        if (lastLine != null) {
+            ok &= request.checkLastWord ? lastLine.ok : lastLine.okWithoutLastWord;
+        }
+        lineResults = newResults;
+        return ok;
+    }
+
+    private LineResult checkLine(String line) {
+        if (line.trim().isEmpty() || new LineTypeChecker(line).getLineType() == LineTypeChecker.Type.CHORDS) {
+            return LineResult.EMPTY;
+        }
+        String[] words = Speller.splitWords(line);
+        boolean ok = true;
+        boolean okWithoutLastWord = true;
+        boolean hasWords = false;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i].isEmpty()) {
+                continue;
+            }
+            hasWords = true;
+            if (!speller.checkWord(words[i])) {
+                ok = false;
+                if (i < words.length - 1) {
+                    okWithoutLastWord = false;
+                }
+            }
+        }
+        if (!hasWords) {
+            return LineResult.EMPTY;
+        }
+        return new LineResult(true, ok, okWithoutLastWord);
+    }
+}
@@ -18,7 +18,6 @@
 package org.quelea.services.languages.spelling;
 
 import javafx.animation.FadeTransition;
-import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.value.ChangeListener;
@@ -55,8 +54,8 @@ public class SpellTextArea extends StackPane {
     private KeyCode runSpellKey;
     private Speller speller;
     private ImageView warning;
-    private Thread checkerThread;
-    private volatile SimpleBooleanProperty spellingOkProperty;
+    private IncrementalSpellChecker checker;
+    private SimpleBooleanProperty spellingOkProperty;
     private UndoHandler undoHandler;
 
     /**
@@ -67,11 +66,13 @@ public class SpellTextArea extends StackPane {
         undoHandler = new UndoHandler();
         if (QueleaProperties.get().isDictionaryEnabled()) {
             speller = new Speller(QueleaProperties.get().getDictionary());
+            speller.prepareSuggestions();
         } else {
             speller = new Speller(null);
         }
         area = new LyricsTextArea();
         spellingOkProperty = new SimpleBooleanProperty(speller.checkText(area.getTextArea().getText(), true));
+        checker = new IncrementalSpellChecker(speller, CHECK_FREQ, this::spellingChecked);
         getChildren().add(area);
         warning = new ImageView("file:icons/warning.png");
         Tooltip.install(warning, new Tooltip(LabelGrabber.INSTANCE.getLabel("spelling.errors.in.doc.label")));
@@ -114,32 +115,12 @@ public class SpellTextArea extends StackPane {
         area.getTextArea().textProperty().addListener(new ChangeListener<String>() {
             @Override
             public void changed(ObservableValue<? extends String> ov, String t, final String t1) {
-                updateSpelling(false);
+                checker.textChanged(t1);
                 if (!undoHandler.isUndo()) {
                     undoHandler.add(t, t1);
                 } else {
                     undoHandler.setUndo(false);
                 }
-
-                if (checkerThread != null && checkerThread.isAlive()) {
-                    checkerThread.interrupt();
-                }
-                checkerThread = new Thread() {
-                    public void run() {
-                        try {
-                            Thread.sleep(CHECK_FREQ);
-                            Platform.runLater(new Runnable() {
-                                @Override
-                                public void run() {
-                                    updateSpelling(true);
-                                }
-                            });
-                        } catch (InterruptedException ex) {
-                            //Quit silently if interrupted
-                        }
-                    }
-                };
-                checkerThread.start();
             }
         });
     }
@@ -157,15 +138,26 @@ public class SpellTextArea extends StackPane {
     }
 
     /**
-     * Check the spelling on this text area - called internally to update state,
-     * but can be fired externally also.
+     * Check the spelling on this text area from scratch - for when the
+     * dictionary or the words to ignore have changed. The check is done in
+     * the background, and the spelling property is updated once it's done.
      * <p/>
      *
      * @param lastWord true if the last word should be included in the spell
      *                 check.
      */
     public void updateSpelling(boolean lastWord) {
-        spellingOkProperty.set(speller.checkText(getText(), lastWord));
+        checker.recheck(area.getTextArea().getText(), lastWord);
+    }
+
+    /**
+     * Called on the FX thread with the result of each spelling check.
+     */
+    private void spellingChecked(boolean ok) {
+        if (spellingOkProperty.get() == ok) {
+            return;
+        }
+        spellingOkProperty.set(ok);
         FadeTransition transition = new FadeTransition(Duration.seconds(0.2), warning);
         if (spellingOkProperty.get()) {
             transition.setFromValue(warning.getOpacity());
@@ -17,22 +17,24 @@
  */
 package org.quelea.services.languages.spelling;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import org.quelea.services.utils.LoggerUtils;
 
 /**
  * Checks text for spelling errors, and provides correction suggestions.
@@ -41,10 +43,15 @@ import java.util.regex.Pattern;
  */
 public class Speller {
 
+    private static final Logger LOGGER = LoggerUtils.getLogger();
     public static final String SPELLING_REGEX = "([^\\p{Alnum}'\\-])+";
-    private static HashMap<File, HashSet<String>> dictionaries = new HashMap<>();
-    private HashSet<String> ignoreWords;
-    private HashSet<String> words;
+    private static final Pattern SPELLING_PATTERN = Pattern.compile(SPELLING_REGEX, Pattern.UNICODE_CHARACTER_CLASS);
+    private static final int SUGGESTION_COUNT = 6;
+    private static final Pattern SANITISE_PATTERN = Pattern.compile("[^\\p{Alnum}'\\- ]", Pattern.UNICODE_CHARACTER_CLASS);
+    private static final Map<File, WordList> dictionaries = new ConcurrentHashMap<>();
+    private static final Map<File, CompletableFuture<SuggestionIndex>> suggestionIndexes = new ConcurrentHashMap<>();
+    private Set<String> ignoreWords;
+    private WordList words;
     private Dictionary dict;
 
     /**
@@ -54,7 +61,7 @@ public class Speller {
      * dictionary, one per line.
      */
     public Speller(Dictionary dict) {
-        ignoreWords = new HashSet<>();
+        ignoreWords = ConcurrentHashMap.newKeySet();
         setDictionary(dict);
     }
 
@@ -68,37 +75,26 @@ public class Speller {
             return;
         }
         this.dict = dict;
-        if(dictionaries.containsKey(dict.getDictFile())) {
-            words = dictionaries.get(dict.getDictFile());
-        }
-        else {
-            words = new HashSet<>();
-            dictionaries.put(dict.getDictFile(), words);
+        words = dictionaries.computeIfAbsent(dict.getDictFile(), file -> {
             try {
-                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dict.getDictFile()), "UTF-8"));
-                String line;
-                while((line = reader.readLine()) != null) {
-                    line = sanitiseWord(line);
-                    if(!line.isEmpty()) {
-                        dictionaries.get(dict.getDictFile()).add(line);
-                    }
-                }
+                return WordList.load(file);
             }
             catch(IOException ex) {
                 throw new IllegalArgumentException("Error reading dictionary file", ex);
             }
-        }
+        });
     }
 
     /**
-     * Check to see if a particular word is in the dictionary.
+     * Check to see if a particular word is in the dictionary. This may be
+     * called from any thread.
      * <p/>
      * @param word the word to check.
      * @return true if it is correct, false if not.
      */
     public boolean checkWord(String word) {
         word = sanitiseWord(word);
-        if(ignoreWords == null || words == null || word.length()==1) {
+        if(ignoreWords == null || words == null || word.length() <= 1) {
             return true;
         }
         return words.contains(word) || ignoreWords.contains(word);
@@ -125,7 +121,7 @@ public class Speller {
         if(text.trim().isEmpty()) {
             return ret;
         }
-        String[] tempWords = Pattern.compile(SPELLING_REGEX, Pattern.UNICODE_CHARACTER_CLASS).split(text);
+        String[] tempWords = splitWords(text);
         for(String word : tempWords) {
             if(!checkWord(word)) {
                 ret.add(word);
@@ -134,6 +130,15 @@ public class Speller {
         return ret;
     }
 
+    /**
+     * Start building the index used for suggestions for this speller's
+     * dictionary in the background, if it hasn't been already, so it's
+     * ready by the time any suggestions are needed.
+     */
+    public void prepareSuggestions() {
+        getSuggestionIndex();
+    }
+
     /**
      * Get suggestions for a misspelt word.
      * <p/>
@@ -141,29 +146,42 @@ public class Speller {
      * @return the best suggestions from the dictionary file.
      */
     public List<String> getSuggestions(String misspell) {
-        PriorityQueue<Suggestion> list = new PriorityQueue<>();
-        for(String word : words) {
-            int distance = LevenshteinDistance.computeLevenshteinDistance(word, misspell);
-            if(word.length() == misspell.length()) {
-                distance--;
-            }
-            if(anagram(word, misspell)) {
-                distance -= word.length();
-            }
-            if(distance < 5) {
-                list.add(new Suggestion(word, distance));
-            }
+        CompletableFuture<SuggestionIndex> index = getSuggestionIndex();
+        if(index == null) {
+            return new ArrayList<>();
         }
-        List<String> ret = new ArrayList<>();
-        int count = 0;
-        for(Suggestion word : list) {
-            ret.add(word.getWord());
-            count++;
-            if(count == 6) {
-                break;
-            }
+        try {
+            return index.get().getSuggestions(sanitiseWord(misspell), SUGGESTION_COUNT);
+        }
+        catch(InterruptedException | ExecutionException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't get spelling suggestions", ex);
+            return new ArrayList<>();
         }
-        return ret;
+    }
+
+    /**
+     * Get the suggestion index for this speller's dictionary, building it in
+     * the background if this is the first time it's been asked for. There's
+     * only ever one index per dictionary, however many spellers use it.
+     * <p/>
+     * @return the suggestion index, or null if there's no dictionary.
+     */
+    private CompletableFuture<SuggestionIndex> getSuggestionIndex() {
+        if(dict == null || words == null) {
+            return null;
+        }
+        final WordList wordList = words;
+        return suggestionIndexes.computeIfAbsent(dict.getDictFile(), file -> CompletableFuture.supplyAsync(() -> {
+            long startTime = System.currentTimeMillis();
+            try {
+                SuggestionIndex index = SuggestionIndex.load(wordList);
+                LOGGER.log(Level.INFO, "Loaded suggestion index for {0} in {1}ms", new Object[]{file.getName(), System.currentTimeMillis() - startTime});
+                return index;
+            }
+            catch(IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }));
     }
 
     /**
@@ -178,7 +196,7 @@ public class Speller {
         if(text.trim().isEmpty()) {
             return true;
         }
-        String[] tempWords = Pattern.compile(SPELLING_REGEX, Pattern.UNICODE_CHARACTER_CLASS).split(text);
+        String[] tempWords = splitWords(text);
         for(int i = 0; i < tempWords.length; i++) {
             if(i == tempWords.length - 1 && !checkLastWord) {
                 break;
@@ -210,17 +228,19 @@ public class Speller {
         }
     }
 
-    private String sanitiseWord(String word) {
-        word = word.trim().toLowerCase();
-        word = Pattern.compile("[^\\p{Alnum}'\\- ]", Pattern.UNICODE_CHARACTER_CLASS).matcher(word).replaceAll("");
-        return word;
+    /**
+     * Split some text into the words to be checked.
+     * <p/>
+     * @param text the text to split.
+     * @return the words in the text.
+     */
+    static String[] splitWords(String text) {
+        return SPELLING_PATTERN.split(text);
     }
 
-    private boolean anagram(String firstWord, String secondWord) {
-        char[] word1 = firstWord.toLowerCase().toCharArray();
-        char[] word2 = secondWord.toLowerCase().toCharArray();
-        Arrays.sort(word1);
-        Arrays.sort(word2);
-        return Arrays.equals(word1, word2);
+    static String sanitiseWord(String word) {
+        word = word.trim().toLowerCase();
+        word = SANITISE_PATTERN.matcher(word).replaceAll("");
+        return word;
     }
 }
@@ -0,0 +1,291 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.languages.spelling;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.BoundedEditDistance;
+import org.quelea.services.utils.LoggerUtils;
+
+/**
+ * An index of the words in a dictionary for finding spelling suggestions
+ * quickly, without working out the distance to every word.
+ * <p/>
+ * This is a deletion neighbourhood index (as used by SymSpell.) Every way of
+ * deleting up to two letters from the start of each word is hashed and
+ * stored against the word, and the same is done to the misspelt word at
+ * lookup time - any word within two edits of it shares at least one of these
+ * hashes, so only the few words that do need their distance working out. An
+ * extra hash of each word's sorted letters finds anagrams the same way.
+ * <p/>
+ * The hashes and word numbers are packed together into one sorted array of
+ * longs rather than a map of strings, since the bundled dictionaries run to
+ * hundreds of thousands of words. This is written to the dictionary cache
+ * alongside the compiled word list and memory mapped, so it's only built once
+ * for each version of a dictionary.
+ * <p/>
+ * @author Michael
+ */
+final class SuggestionIndex {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    /**
+     * The maximum edit distance of a suggestion (other than an anagram.)
+     */
+    private static final int MAX_DISTANCE = 2;
+    /**
+     * Only deletions from this many letters at the start of a word are
+     * indexed, which keeps the index small for long words.
+     */
+    private static final int PREFIX_LENGTH = 7;
+    private static final int ID_BITS = 24;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long ANAGRAM_SEED = 0x2545F4914F6CDD1DL;
+    private static final int MAGIC = 0x51535549;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".qsi";
+    private static final int HEADER_SIZE = 16;
+    private final WordList words;
+    private final LongBuffer entries;
+
+    private SuggestionIndex(WordList words, ByteBuffer buffer) throws IOException {
+        this.words = words;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != words.size()) {
+            throw new IOException("Not a suggestion index for this dictionary, or an old version");
+        }
+        buffer.position(HEADER_SIZE);
+        entries = buffer.slice().asLongBuffer();
+    }
+
+    /**
+     * Load the suggestion index for the words in a dictionary, building it
+     * first if it hasn't been built for this version of the dictionary.
+     * <p/>
+     * @param words the words in the dictionary.
+     * @return the suggestion index.
+     * @throws IOException if the index couldn't be read or written.
+     */
+    static SuggestionIndex load(WordList words) throws IOException {
+        File cacheFile = words.getCacheFile(EXTENSION);
+        if (cacheFile.exists()) {
+            try {
+                return new SuggestionIndex(words, map(cacheFile));
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't read suggestion index " + cacheFile + ", building it again", ex);
+            }
+        }
+        write(build(words), words.size(), cacheFile);
+        return new SuggestionIndex(words, map(cacheFile));
+    }
+
+    /**
+     * Work out the sorted entries of the index - the hashes of each word
+     * packed with the word's number.
+     */
+    private static long[] build(WordList words) {
+        if (words.size() > ID_MASK) {
+            throw new IllegalArgumentException("Too many words to index: " + words.size());
+        }
+        long[] all = new long[Math.max(16, words.size() * 8)];
+        int size = 0;
+        long[] hashes = new long[64];
+        for (int id = 0; id < words.size(); id++) {
+            int count = getHashes(words.get(id), hashes);
+            if (size + count > all.length) {
+                all = Arrays.copyOf(all, Math.max(all.length * 2, size + count));
+            }
+            for (int i = 0; i < count; i++) {
+                all[size++] = (hashes[i] << ID_BITS) | id;
+            }
+        }
+        Arrays.sort(all, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || all[i] != all[unique - 1]) {
+                all[unique++] = all[i];
+            }
+        }
+        return Arrays.copyOf(all, unique);
+    }
+
+    private static void write(long[] entries, int wordCount, File cacheFile) throws IOException {
+        File temp = File.createTempFile("suggestions", ".tmp", cacheFile.getParentFile());
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(wordCount);
+                out.writeInt(0);
+                for (long entry : entries) {
+                    out.writeLong(entry);
+                }
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static ByteBuffer map(File cacheFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Get the best suggestions for a misspelt word, best first. Words are
+     * scored by their edit distance from the misspelt word, with a bonus for
+     * being the same length and a large bonus for being an anagram of it.
+     * Words added to the dictionary since it was compiled aren't in the index,
+     * so they're checked individually - there are only ever a few.
+     * <p/>
+     * @param misspell the misspelt word.
+     * @param count the maximum number of suggestions to return.
+     * @return the suggestions.
+     */
+    List<String> getSuggestions(String misspell, int count) {
+        BoundedEditDistance distance = new BoundedEditDistance(misspell);
+        String letters = sortLetters(misspell);
+        Map<String, Integer> scores = new HashMap<>();
+        long[] hashes = new long[64];
+        int hashCount = getHashes(misspell, hashes);
+        for (int i = 0; i < hashCount; i++) {
+            long key = hashes[i] << ID_BITS;
+            int pos = lowerBound(key);
+            while (pos < entries.limit() && (entries.get(pos) & ~ID_MASK) == key) {
+                String word = words.get((int) (entries.get(pos) & ID_MASK));
+                if (!scores.containsKey(word)) {
+                    addScore(scores, word, misspell, letters, distance);
+                }
+                pos++;
+            }
+        }
+        for (String word : words.getAddedWords()) {
+            addScore(scores, word, misspell, letters, distance);
+        }
+        PriorityQueue<Suggestion> queue = new PriorityQueue<>();
+        for (Map.Entry<String, Integer> entry : scores.entrySet()) {
+            if (entry.getValue() != Integer.MAX_VALUE) {
+                queue.add(new Suggestion(entry.getKey(), entry.getValue()));
+            }
+        }
+        List<String> ret = new ArrayList<>();
+        while (!queue.isEmpty() && ret.size() < count) {
+            ret.add(queue.poll().getWord());
+        }
+        return ret;
+    }
+
+    /**
+     * Score a word against the misspelt word and put it in the map. Words
+     * that are too far away get a score of Integer.MAX_VALUE, so they're not
+     * looked at again.
+     */
+    private static void addScore(Map<String, Integer> scores, String word, String misspell, String letters, BoundedEditDistance distance) {
+        boolean anagram = word.length() == misspell.length() && sortLetters(word).equals(letters);
+        int score = distance.distance(word, anagram ? Integer.MAX_VALUE : MAX_DISTANCE);
+        if (score < 0) {
+            scores.put(word, Integer.MAX_VALUE);
+            return;
+        }
+        if (word.length() == misspell.length()) {
+            score--;
+        }
+        if (anagram) {
+            score -= word.length();
+        }
+        scores.put(word, score);
+    }
+
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = entries.limit();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Put the hashes of the start of the word, and of every way of deleting
+     * one or two letters from it, into the given array, followed by the hash
+     * of its sorted letters.
+     * <p/>
+     * @return the number of hashes.
+     */
+    private static int getHashes(String word, long[] hashes) {
+        int length = Math.min(word.length(), PREFIX_LENGTH);
+        int count = 0;
+        hashes[count++] = hash(word, length, -1, -1, 0);
+        for (int i = 0; i < length; i++) {
+            hashes[count++] = hash(word, length, i, -1, 0);
+            for (int j = i + 1; j < length; j++) {
+                hashes[count++] = hash(word, length, i, j, 0);
+            }
+        }
+        String letters = sortLetters(word);
+        hashes[count++] = hash(letters, letters.length(), -1, -1, ANAGRAM_SEED);
+        return count;
+    }
+
+    /**
+     * Hash the first length characters of a string, skipping the characters
+     * at positions skip1 and skip2. Only the bottom 39 bits are used, so it
+     * can be packed with a word number.
+     */
+    private static long hash(String str, int length, int skip1, int skip2, long seed) {
+        long hash = seed ^ 0xCBF29CE484222325L;
+        for (int i = 0; i < length; i++) {
+            if (i != skip1 && i != skip2) {
+                hash = (hash ^ str.charAt(i)) * 0x100000001B3L;
+            }
+        }
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return hash & ((1L << (64 - ID_BITS - 1)) - 1);
+    }
+
+    private static String sortLetters(String word) {
+        char[] letters = word.toCharArray();
+        Arrays.sort(letters);
+        return new String(letters);
+    }
+}
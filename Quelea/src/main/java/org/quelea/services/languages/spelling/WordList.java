@@ -0,0 +1,284 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.languages.spelling;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * The words in a spelling dictionary, compiled into a compact sorted form
+ * and memory mapped, rather than held as strings on the heap.
+ * <p/>
+ * Each dictionary file is compiled the first time it's used into a file in
+ * the dictionary cache - the words' UTF-8 bytes one after another in sorted
+ * order, with a table of where each one starts. Looking a word up is then a
+ * binary search over the mapped file. The compiled file is named after the
+ * size and modification time of the dictionary it came from, so it's
+ * compiled again if the dictionary changes.
+ * <p/>
+ * Words added while Quelea is running are appended to the dictionary file
+ * and also kept in memory until the dictionary is next compiled.
+ * <p/>
+ * @author Michael
+ */
+final class WordList {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int MAGIC = 0x51574F52;
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".qwl";
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+    private final File cacheFile;
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int dataStart;
+    private final Set<String> added;
+
+    private WordList(File cacheFile) throws IOException {
+        this.cacheFile = cacheFile;
+        this.buffer = map(cacheFile);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a compiled dictionary, or an old version");
+        }
+        count = buffer.getInt(HEADER_SIZE - 4);
+        dataStart = HEADER_SIZE + (count + 1) * 4;
+        added = Collections.synchronizedSet(new HashSet<>());
+    }
+
+    /**
+     * Load the words in the given dictionary file, compiling it first if it
+     * hasn't been compiled or has changed since it was.
+     * <p/>
+     * @param dictFile the dictionary file - a list of words, one per line.
+     * @return the words in the dictionary.
+     * @throws IOException if the dictionary couldn't be read or compiled.
+     */
+    static WordList load(File dictFile) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String prefix = dictFile.getName() + "-";
+        File cacheDir = QueleaProperties.get().getDictionaryCacheDir();
+        File cacheFile = new File(cacheDir, prefix + Long.toHexString(dictFile.length()) + "-" + Long.toHexString(dictFile.lastModified()) + EXTENSION);
+        WordList ret = null;
+        if (cacheFile.exists()) {
+            try {
+                ret = new WordList(cacheFile);
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't read compiled dictionary " + cacheFile + ", compiling it again", ex);
+            }
+        }
+        if (ret == null) {
+            compile(dictFile, cacheFile);
+            ret = new WordList(cacheFile);
+            File[] files = cacheDir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().startsWith(prefix) && !file.equals(cacheFile) && !file.delete()) {
+                        LOGGER.log(Level.FINE, "Couldn''t delete {0}, it may still be open", file);
+                    }
+                }
+            }
+        }
+        LOGGER.log(Level.INFO, "Loaded {0} words for {1} in {2}ms ({3}KB mapped)", new Object[]{ret.size(), dictFile.getName(), System.currentTimeMillis() - startTime, ret.buffer.capacity() / 1024});
+        return ret;
+    }
+
+    /**
+     * Determine whether the given word is in the dictionary.
+     * <p/>
+     * @param word the word, already sanitised.
+     * @return true if it's in the dictionary, false otherwise.
+     */
+    boolean contains(String word) {
+        if (!added.isEmpty() && added.contains(word)) {
+            return true;
+        }
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a word to the dictionary for as long as Quelea is running. It's up
+     * to the caller to add it to the dictionary file.
+     * <p/>
+     * @param word the word, already sanitised.
+     */
+    void add(String word) {
+        added.add(word);
+    }
+
+    /**
+     * Get the words that have been added since the dictionary was compiled.
+     * <p/>
+     * @return the added words.
+     */
+    List<String> getAddedWords() {
+        synchronized (added) {
+            return new ArrayList<>(added);
+        }
+    }
+
+    /**
+     * Get the number of words in the compiled dictionary (not including any
+     * that have been added since.)
+     * <p/>
+     * @return the number of words.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Get a file in the dictionary cache for storing something else compiled
+     * from this version of the dictionary. It's removed along with the
+     * compiled dictionary when the dictionary changes.
+     * <p/>
+     * @param extension the extension of the file.
+     * @return the file.
+     */
+    File getCacheFile(String extension) {
+        String name = cacheFile.getName();
+        return new File(cacheFile.getParentFile(), name.substring(0, name.length() - EXTENSION.length()) + extension);
+    }
+
+    /**
+     * Get a word from the compiled dictionary.
+     * <p/>
+     * @param index the index of the word, from 0 to size()-1.
+     * @return the word.
+     */
+    String get(int index) {
+        int start = buffer.getInt(HEADER_SIZE + index * 4);
+        int end = buffer.getInt(HEADER_SIZE + (index + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(dataStart + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compare a word in the compiled dictionary to the given bytes, in the
+     * same (unsigned byte) order the words were sorted in.
+     */
+    private int compare(int index, byte[] bytes) {
+        int start = dataStart + buffer.getInt(HEADER_SIZE + index * 4);
+        int length = dataStart + buffer.getInt(HEADER_SIZE + (index + 1) * 4) - start;
+        int common = Math.min(length, bytes.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, bytes[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+
+    private static ByteBuffer map(File cacheFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Compile a dictionary file into the cache. The words are sanitised the
+     * same way Speller sanitises words it checks, then sorted by their UTF-8
+     * bytes.
+     */
+    private static void compile(File dictFile, File cacheFile) throws IOException {
+        TreeSet<byte[]> words = new TreeSet<>(WordList::compareBytes);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dictFile), "UTF-8"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = Speller.sanitiseWord(line);
+                if (!line.isEmpty()) {
+                    words.add(line.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        File dir = cacheFile.getParentFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+        File temp = File.createTempFile("dictionary", ".tmp", dir);
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(words.size());
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[] word : words) {
+                    offset += word.length;
+                    out.writeInt(offset);
+                }
+                for (byte[] word : words) {
+                    out.write(word);
+                }
+            }
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
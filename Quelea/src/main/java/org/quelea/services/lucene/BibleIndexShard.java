@@ -0,0 +1,488 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Matches;
+import org.apache.lucene.search.MatchesIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.quelea.data.bible.Bible;
+import org.quelea.data.bible.BibleBook;
+import org.quelea.data.bible.BibleChapter;
+import org.quelea.data.bible.BibleVerse;
+import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
+
+/**
+ * The part of the bible search index holding a single translation. Each
+ * shard is kept on disk in its own directory, named after the bible's cache
+ * key and stamped with it, so a shard only needs building when its bible
+ * changes - and an up to date shard can be searched without loading the
+ * bible at all.
+ * <p/>
+ * Verses are identified by the position of their book and chapter in the
+ * bible rather than by object, so the index doesn't hold on to any of the
+ * bible.
+ * <p/>
+ * @author Michael
+ */
+class BibleIndexShard {
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final String STAMP_KEY = "quelea.biblestamp";
+    private static final String CHAPTERS_KEY = "quelea.biblechapters";
+    private static final String FORMAT = "1";
+    private static final FieldType TEXT_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+
+    static {
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.freeze();
+    }
+    private final Bible bible;
+    private final String stamp;
+    private final Directory index;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private volatile boolean built;
+    private volatile int chapterCount;
+
+    /**
+     * Open the shard for the given bible, reusing the persisted shard if it
+     * was built from the same bible.
+     * <p/>
+     * @param bible the bible the shard holds.
+     * @param analyzer the analyzer used for the verse text.
+     * @throws IOException if the shard couldn't be opened.
+     */
+    BibleIndexShard(Bible bible, Analyzer analyzer) throws IOException {
+        this.bible = bible;
+        this.stamp = bible.getCacheKey() == null ? null : bible.getCacheKey() + ":" + FORMAT;
+        Directory dir = null;
+        IndexWriter indexWriter = null;
+        if (stamp != null) {
+            try {
+                dir = new MMapDirectory(getDirectory(bible.getCacheKey()).toPath());
+                if (DirectoryReader.indexExists(dir)) {
+                    Map<String, String> userData = SegmentInfos.readLatestCommit(dir).getUserData();
+                    if (stamp.equals(userData.get(STAMP_KEY)) && userData.containsKey(CHAPTERS_KEY)) {
+                        chapterCount = Integer.parseInt(userData.get(CHAPTERS_KEY));
+                        built = true;
+                    }
+                }
+                indexWriter = new IndexWriter(dir, new IndexWriterConfig(analyzer));
+            }
+            catch (IOException | NumberFormatException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't open persistent index for " + bible.getName() + ", falling back to an in-memory index", ex);
+                if (dir != null) {
+                    dir.close();
+                }
+                built = false;
+                chapterCount = 0;
+                indexWriter = null;
+            }
+        }
+        if (indexWriter == null) {
+            dir = new ByteBuffersDirectory();
+            indexWriter = new IndexWriter(dir, new IndexWriterConfig(analyzer));
+        }
+        index = dir;
+        writer = indexWriter;
+        searcherManager = new SearcherManager(writer, null);
+    }
+
+    /**
+     * Get the directory a shard with the given key is kept in.
+     * <p/>
+     * @param key the cache key of the shard's bible.
+     * @return the directory of the shard.
+     */
+    static File getDirectory(String key) {
+        return new File(getRootDirectory(), key);
+    }
+
+    /**
+     * Get the directory all the shards are kept in.
+     * <p/>
+     * @return the bible index directory.
+     */
+    static File getRootDirectory() {
+        return new File(QueleaProperties.get().getIndexDir(), "bibles");
+    }
+
+    /**
+     * Get the bible this shard holds.
+     * <p/>
+     * @return the bible.
+     */
+    Bible getBible() {
+        return bible;
+    }
+
+    /**
+     * Determine whether this shard holds every chapter of its bible.
+     * <p/>
+     * @return true if the shard has been built, false otherwise.
+     */
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Get the number of chapters in this shard.
+     * <p/>
+     * @return the number of chapters.
+     */
+    int size() {
+        return chapterCount;
+    }
+
+    /**
+     * Index every chapter of the bible, unless that's already been done.
+     */
+    synchronized void build() {
+        if (built) {
+            return;
+        }
+        try {
+            writer.deleteAll();
+            int count = 0;
+            BibleBook[] books = bible.getBooks();
+            for (int i = 0; i < books.length; i++) {
+                BibleChapter[] chapters = books[i].getChapters();
+                for (int j = 0; j < chapters.length; j++) {
+                    addChapter(i, j, chapters[j]);
+                    count++;
+                }
+            }
+            chapterCount = count;
+            commit(true);
+            searcherManager.maybeRefreshBlocking();
+            built = true;
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't build index for " + bible.getName(), ex);
+        }
+    }
+
+    /**
+     * Add or update some chapters of the bible in this shard.
+     * <p/>
+     * @param chapters the chapters to add.
+     */
+    synchronized void addAll(Collection<? extends BibleChapter> chapters) {
+        try {
+            for (BibleChapter chapter : chapters) {
+                int[] position = getPosition(chapter);
+                if (position != null) {
+                    writer.deleteDocuments(getChapterTerm(position[0], position[1]));
+                    //A built shard already holds every chapter, so this just replaces one
+                    if (!built) {
+                        chapterCount++;
+                    }
+                    addChapter(position[0], position[1], chapter);
+                }
+            }
+            commit(built);
+            searcherManager.maybeRefreshBlocking();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
+        }
+    }
+
+    /**
+     * Remove a chapter of the bible from this shard.
+     * <p/>
+     * @param chapter the chapter to remove.
+     */
+    synchronized void remove(BibleChapter chapter) {
+        int[] position = getPosition(chapter);
+        if (position == null) {
+            return;
+        }
+        try {
+            writer.deleteDocuments(getChapterTerm(position[0], position[1]));
+            chapterCount = Math.max(0, chapterCount - 1);
+            built = false;
+            commit(false);
+            searcherManager.maybeRefreshBlocking();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
+        }
+    }
+
+    /**
+     * Remove everything from this shard.
+     */
+    synchronized void clear() {
+        try {
+            writer.deleteAll();
+            chapterCount = 0;
+            built = false;
+            commit(false);
+            searcherManager.maybeRefreshBlocking();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
+    }
+
+    /**
+     * Close this shard.
+     */
+    synchronized void close() {
+        try {
+            searcherManager.close();
+            writer.close();
+            index.close();
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close index for " + bible.getName(), ex);
+        }
+    }
+
+    /**
+     * Start searching this shard. The hits are then read a page at a time,
+     * all from the same searcher.
+     * <p/>
+     * @param query the query to search for.
+     * @return the hits, which must be closed once they've been used.
+     * @throws IOException if the search failed.
+     */
+    Hits search(Query query) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return new Hits(searcher, searcher.rewrite(query));
+        }
+        catch (IOException | RuntimeException ex) {
+            searcherManager.release(searcher);
+            throw ex;
+        }
+    }
+
+    private void addChapter(int bookIndex, int chapterIndex, BibleChapter chapter) throws IOException {
+        String bibleName = bible.getName();
+        for (BibleVerse verse : chapter.getVerses()) {
+            Document doc = new Document();
+            doc.add(new Field("text", verse.getVerseText(), TEXT_TYPE));
+            doc.add(new StringField("bible", bibleName, Field.Store.NO));
+            doc.add(new SortedDocValuesField("bible", new BytesRef(bibleName)));
+            doc.add(new NumericDocValuesField("book", chapter.getBook().getBookNumber()));
+            doc.add(new NumericDocValuesField("chapter", chapter.getNum()));
+            doc.add(new NumericDocValuesField("verse", verse.getNum()));
+            doc.add(new NumericDocValuesField("bookindex", bookIndex));
+            doc.add(new NumericDocValuesField("chapterindex", chapterIndex));
+            doc.add(new StringField("position", bookIndex + ":" + chapterIndex, Field.Store.NO));
+            writer.addDocument(doc);
+        }
+    }
+
+    private static Term getChapterTerm(int bookIndex, int chapterIndex) {
+        return new Term("position", bookIndex + ":" + chapterIndex);
+    }
+
+    /**
+     * Get the position of a chapter in the bible, as the index of its book
+     * and the index of the chapter in that book.
+     */
+    private int[] getPosition(BibleChapter chapter) {
+        BibleBook[] books = bible.getBooks();
+        for (int i = 0; i < books.length; i++) {
+            if (books[i] == chapter.getBook()) {
+                BibleChapter[] chapters = books[i].getChapters();
+                for (int j = 0; j < chapters.length; j++) {
+                    if (chapters[j] == chapter) {
+                        return new int[]{i, j};
+                    }
+                }
+            }
+        }
+        LOGGER.log(Level.WARNING, "Chapter {0} isn''t part of {1}", new Object[]{chapter.getNum(), bible.getName()});
+        return null;
+    }
+
+    /**
+     * Commit the changes to the shard, stamping it if it holds the whole
+     * bible so it can be reused next time.
+     */
+    private void commit(boolean complete) throws IOException {
+        if (stamp != null) {
+            Map<String, String> userData = new HashMap<>();
+            userData.put(STAMP_KEY, complete ? stamp : "");
+            userData.put(CHAPTERS_KEY, Integer.toString(chapterCount));
+            writer.setLiveCommitData(userData.entrySet());
+        }
+        writer.commit();
+    }
+
+    /**
+     * The hits from searching a shard, read a page at a time with each page
+     * carrying on after the last hit of the one before, so earlier hits
+     * aren't collected again. The searcher is held until these are closed,
+     * so every page comes from the same view of the index and the hits can
+     * be turned into verses afterwards.
+     */
+    class Hits implements AutoCloseable {
+
+        private final IndexSearcher searcher;
+        private final Query query;
+        private ScoreDoc last;
+        private int totalHits;
+        private Weight weight;
+
+        private Hits(IndexSearcher searcher, Query query) {
+            this.searcher = searcher;
+            this.query = query;
+        }
+
+        /**
+         * Get the next page of hits, best first.
+         *
+         * @param count the maximum number of hits to get.
+         * @return the hits, fewer than asked for if there are no more.
+         * @throws IOException if the index couldn't be read.
+         */
+        ScoreDoc[] next(int count) throws IOException {
+            TopScoreDocCollector collector = TopScoreDocCollector.create(count, last, Integer.MAX_VALUE);
+            searcher.search(query, collector);
+            ScoreDoc[] scoreDocs = collector.topDocs().scoreDocs;
+            if (last == null) {
+                totalHits = collector.getTotalHits();
+            }
+            if (scoreDocs.length > 0) {
+                last = scoreDocs[scoreDocs.length - 1];
+            }
+            return scoreDocs;
+        }
+
+        /**
+         * Get the total number of hits, once the first page has been read.
+         *
+         * @return the total number of hits.
+         */
+        int getTotalHits() {
+            return totalHits;
+        }
+
+        /**
+         * Get the verse a hit is for, along with where the query matched it.
+         * This only loads the verses of the chapter that was hit, so
+         * resolving hits across many bibles doesn't load them all.
+         *
+         * @param scoreDoc the hit.
+         * @return the verse that was hit, or null if it couldn't be found.
+         * @throws IOException if the index couldn't be read.
+         */
+        BibleSearchResults.Hit resolve(ScoreDoc scoreDoc) throws IOException {
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+            int doc = scoreDoc.doc - leaf.docBase;
+            BibleBook[] books = bible.getBooks();
+            int bookIndex = (int) getLong(leaf, "bookindex", doc);
+            if (bookIndex < 0 || bookIndex >= books.length) {
+                return null;
+            }
+            BibleChapter chapter = books[bookIndex].getChapter((int) getLong(leaf, "chapterindex", doc));
+            BibleVerse verse = chapter == null ? null : chapter.getVerse((int) getLong(leaf, "verse", doc));
+            if (verse == null) {
+                return null;
+            }
+            return new BibleSearchResults.Hit(verse, scoreDoc.score, getOffsets(leaf, doc));
+        }
+
+        /**
+         * Get the start and end offsets of everywhere the query matched the
+         * text of a verse.
+         */
+        private int[] getOffsets(LeafReaderContext leaf, int doc) throws IOException {
+            if (weight == null) {
+                weight = searcher.createWeight(query, ScoreMode.COMPLETE_NO_SCORES, 1);
+            }
+            Matches matches = weight.matches(leaf, doc);
+            MatchesIterator it = matches == null ? null : matches.getMatches("text");
+            if (it == null) {
+                return new int[0];
+            }
+            List<Integer> offsets = new ArrayList<>();
+            while (it.next()) {
+                if (it.startOffset() >= 0) {
+                    offsets.add(it.startOffset());
+                    offsets.add(it.endOffset());
+                }
+            }
+            int[] ret = new int[offsets.size()];
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = offsets.get(i);
+            }
+            return ret;
+        }
+
+        @Override
+        public void close() {
+            try {
+                searcherManager.release(searcher);
+            }
+            catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't release searcher", ex);
+            }
+        }
+    }
+
+    private static long getLong(LeafReaderContext leaf, String field, int doc) throws IOException {
+        NumericDocValues values = DocValues.getNumeric(leaf.reader(), field);
+        return values.advanceExact(doc) ? values.longValue() : -1;
+    }
+}
@@ -18,13 +18,26 @@
  */
 package org.quelea.services.lucene;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -32,57 +45,193 @@ import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
-import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
 import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopScoreDocCollector;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.quelea.data.bible.Bible;
 import org.quelea.data.bible.BibleChapter;
 import org.quelea.services.utils.LoggerUtils;
 
 /**
  * Search index used for indexing the bibles.
+ * <p/>
+ * Each translation has its own shard of the index, which is built, kept on
+ * disk and searched independently of the others - so only translations that
+ * have changed need indexing, they're indexed in parallel, and searching one
+ * translation doesn't touch the rest. Searching all translations searches
+ * every shard in parallel and merges the hits.
+ * <p/>
+ * Within a shard each verse is its own document. Searches come back ranked a
+ * page at a time along with where each verse matched, so nothing has to be
+ * filtered or scanned again afterwards.
+ * <p/>
  * @author Michael
  */
 public class BibleSearchIndex implements SearchIndex<BibleChapter> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
-    private Analyzer analyzer;
-    private Directory index;
-    private Map<Integer, BibleChapter> chapters;
+    private static final int MAX_CHAPTERS = 10000;
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        final AtomicInteger count = new AtomicInteger();
+        EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread thread = new Thread(r, "bible-index-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    private final Analyzer analyzer;
+    private final List<BibleIndexShard> shards;
 
     /**
      * Create a new empty search index.
      */
     public BibleSearchIndex() {
-        chapters = new HashMap<>();
+        shards = new ArrayList<>();
         try {
             analyzer = CustomAnalyzer.builder()
                     .withTokenizer(StandardTokenizerFactory.class)
                     .addTokenFilter(LowerCaseFilterFactory.class)
                     .addTokenFilter(ASCIIFoldingFilterFactory.class)
                     .build();
-            index = new MMapDirectory(Files.createTempDirectory("quelea-mmap-bible").toAbsolutePath());
         } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Couldn't create song search index");
-            throw new RuntimeException("Couldn't create song search index", ex);
+            LOGGER.log(Level.SEVERE, "Couldn't create bible search index");
+            throw new RuntimeException("Couldn't create bible search index", ex);
         }
     }
-    
+
     @Override
     public int size() {
-        return chapters.size();
+        int size = 0;
+        for (BibleIndexShard shard : getShards()) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * Make this index hold exactly the given bibles. Shards that are already
+     * up to date (including ones persisted from a previous run) are reused,
+     * and the rest are built in parallel. This blocks until all the shards
+     * are built.
+     * <p/>
+     * @param bibles the bibles to index.
+     */
+    public void load(Collection<Bible> bibles) {
+        List<BibleIndexShard> newShards = new ArrayList<>();
+        synchronized (this) {
+            Map<Bible, BibleIndexShard> existing = new IdentityHashMap<>();
+            for (BibleIndexShard shard : shards) {
+                existing.put(shard.getBible(), shard);
+            }
+            //Close the shards that aren't needed first, so their directories can be opened again
+            Map<Bible, Boolean> wanted = new IdentityHashMap<>();
+            for (Bible bible : bibles) {
+                wanted.put(bible, Boolean.TRUE);
+            }
+            for (BibleIndexShard shard : shards) {
+                if (!wanted.containsKey(shard.getBible())) {
+                    shard.close();
+                }
+            }
+            for (Bible bible : bibles) {
+                BibleIndexShard shard = existing.get(bible);
+                if (shard == null) {
+                    shard = openShard(bible);
+                }
+                if (shard != null) {
+                    newShards.add(shard);
+                }
+            }
+            shards.clear();
+            shards.addAll(newShards);
+        }
+        removeUnusedShards(bibles);
+        List<Future<?>> builds = new ArrayList<>();
+        for (final BibleIndexShard shard : newShards) {
+            if (shard.isBuilt()) {
+                LOGGER.log(Level.INFO, "Index for {0} is up to date", shard.getBible().getName());
+            }
+            else {
+                builds.add(EXECUTOR.submit(() -> {
+                    LOGGER.log(Level.INFO, "Building index for {0}", shard.getBible().getName());
+                    shard.build();
+                    LOGGER.log(Level.INFO, "Built index for {0}", shard.getBible().getName());
+                }));
+            }
+        }
+        for (Future<?> build : builds) {
+            try {
+                build.get();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException ex) {
+                LOGGER.log(Level.SEVERE, "Couldn't build bible index", ex);
+            }
+        }
+    }
+
+    private BibleIndexShard openShard(Bible bible) {
+        try {
+            return new BibleIndexShard(bible, analyzer);
+        }
+        catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't create index for " + bible.getName(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the persisted shards of bibles that are no longer installed.
+     */
+    private static void removeUnusedShards(Collection<Bible> bibles) {
+        Set<String> keys = new HashSet<>();
+        for (Bible bible : bibles) {
+            keys.add(bible.getCacheKey());
+        }
+        File[] dirs = BibleIndexShard.getRootDirectory().listFiles();
+        if (dirs == null) {
+            return;
+        }
+        for (File dir : dirs) {
+            if (dir.isDirectory() && !keys.contains(dir.getName())) {
+                LOGGER.log(Level.INFO, "Removing unused bible index {0}", dir);
+                File[] files = dir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                dir.delete();
+            }
+        }
+    }
+
+    private synchronized List<BibleIndexShard> getShards() {
+        return new ArrayList<>(shards);
+    }
+
+    /**
+     * Get the shard holding the given bible, creating it if needed.
+     */
+    private synchronized BibleIndexShard getShard(Bible bible) {
+        for (BibleIndexShard shard : shards) {
+            if (shard.getBible() == bible) {
+                return shard;
+            }
+        }
+        BibleIndexShard shard = openShard(bible);
+        if (shard != null) {
+            shards.add(shard);
+        }
+        return shard;
     }
 
     /**
@@ -92,32 +241,38 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      */
     @Override
     public void add(BibleChapter chapter) {
-        List<BibleChapter> list = new ArrayList<>();
-        list.add(chapter);
-        addAll(list);
+        addAll(Collections.singletonList(chapter));
     }
 
     /**
      * Add a number of chapters to the index. This is much more efficient than
-     * calling add() repeatedly because it just uses one writer rather than
-     * opening and closing one for each individual operation.
+     * calling add() repeatedly because each shard is only refreshed once at
+     * the end.
      *
      * @param bibleList the list of chapters to add.
      */
     @Override
     public void addAll(Collection<? extends BibleChapter> bibleList) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
-            for(BibleChapter chapter : bibleList) {
-                Document doc = new Document();
-                doc.add(new TextField("text", chapter.getText(), Field.Store.NO));
-                doc.add(new TextField("number", Integer.toString(chapter.getID()), Field.Store.YES));
-                writer.addDocument(doc);
-                chapters.put(chapter.getID(), chapter);
-                LOGGER.log(Level.FINE, "Added bible chapter to index: {0}", chapter.getID());
+        Map<Bible, List<BibleChapter>> chaptersByBible = new LinkedHashMap<>();
+        for (BibleChapter chapter : bibleList) {
+            Bible bible = chapter.getBook().getBible();
+            List<BibleChapter> chapters = null;
+            for (Map.Entry<Bible, List<BibleChapter>> entry : chaptersByBible.entrySet()) {
+                if (entry.getKey() == bible) {
+                    chapters = entry.getValue();
+                }
             }
+            if (chapters == null) {
+                chapters = new ArrayList<>();
+                chaptersByBible.put(bible, chapters);
+            }
+            chapters.add(chapter);
         }
-        catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
+        for (Map.Entry<Bible, List<BibleChapter>> entry : chaptersByBible.entrySet()) {
+            BibleIndexShard shard = getShard(entry.getKey());
+            if (shard != null) {
+                shard.addAll(entry.getValue());
+            }
         }
     }
 
@@ -128,11 +283,9 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      */
     @Override
     public void remove(BibleChapter chapter) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
-            writer.deleteDocuments(new Term("number", Integer.toString(chapter.getID())));
-        }
-        catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
+        BibleIndexShard shard = getShard(chapter.getBook().getBible());
+        if (shard != null) {
+            shard.remove(chapter);
         }
     }
 
@@ -143,7 +296,6 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      */
     @Override
     public void update(BibleChapter chapter) {
-        remove(chapter);
         add(chapter);
     }
 
@@ -152,42 +304,189 @@ public class BibleSearchIndex implements SearchIndex<BibleChapter> {
      *
      * @param queryString the query string to filter.
      * @param type ignored - may be null.
-     * @return a list of all bible chapters that match the given filter.
+     * @return a list of all bible chapters that match the given filter, in
+     * order of their best matching verse.
      */
     @Override
     public BibleChapter[] filter(String queryString, FilterType type) {
+        Set<BibleChapter> ret = new LinkedHashSet<>();
+        try (Cursor cursor = search(queryString, null)) {
+            for (BibleSearchResults.Hit hit : cursor.next(MAX_CHAPTERS).getHits()) {
+                ret.add(hit.getVerse().getChapter());
+            }
+        }
+        return ret.toArray(new BibleChapter[ret.size()]);
+    }
+
+    /**
+     * Search for the verses that match the given query, best match first.
+     * The hits are then read a page at a time from the returned cursor, which
+     * holds on to the index as it was when the search started until it's
+     * closed.
+     * <p/>
+     * @param queryString the query to search for.
+     * @param bibleName the name of the bible to search in, or null to search
+     * all of them.
+     * @return the cursor to read the hits from, which has no hits if the
+     * query is invalid.
+     */
+    public Cursor search(String queryString, String bibleName) {
         String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
-        if(chapters.isEmpty() || sanctifyQueryString.isEmpty()) {
-            return chapters.values().toArray(new BibleChapter[chapters.size()]);
+        List<BibleIndexShard> targets = new ArrayList<>();
+        for (BibleIndexShard shard : getShards()) {
+            if (bibleName == null || shard.getBible().getName().equals(bibleName)) {
+                targets.add(shard);
+            }
+        }
+        List<BibleIndexShard.Hits> shardHits = new ArrayList<>();
+        if (targets.isEmpty() || sanctifyQueryString.isEmpty()) {
+            return new Cursor(shardHits);
         }
-        List<BibleChapter> ret;
-        try (DirectoryReader dr = DirectoryReader.open(index)) {
-            IndexSearcher searcher = new IndexSearcher(dr);
+        try {
             BooleanQuery.setMaxClauseCount(Integer.MAX_VALUE);
             Query q = new ComplexPhraseQueryParser("text", analyzer).parse(sanctifyQueryString);
-            TopScoreDocCollector collector = TopScoreDocCollector.create(10000,10000);
-            searcher.search(q, collector);
-            ScoreDoc[] hits = collector.topDocs().scoreDocs;
-            ret = new ArrayList<>();
-            for(int i = 0; i < hits.length; ++i) {
-                int docId = hits[i].doc;
-                Document d = searcher.doc(docId);
-                BibleChapter chapter = chapters.get(Integer.parseInt(d.get("number")));
-                ret.add(chapter);
-            }
-            return ret.toArray(new BibleChapter[ret.size()]);
+            for (BibleIndexShard shard : targets) {
+                shardHits.add(shard.search(q));
+            }
+            return new Cursor(shardHits);
+        }
+        catch (ClosedByInterruptException | ThreadInterruptedException ex) {
+            //Ignore, thread is being shut down by other character being typed
         }
         catch (ParseException | IOException ex) {
             LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
-            return new BibleChapter[0];
         }
+        for (BibleIndexShard.Hits hits : shardHits) {
+            hits.close();
+        }
+        return new Cursor(new ArrayList<>());
     }
-    
+
     /**
      * Remove everything from this index.
      */
     @Override
     public void clear() {
-        SearchIndexUtils.clearIndex(index);
+        for (BibleIndexShard shard : getShards()) {
+            shard.clear();
+        }
+    }
+
+    /**
+     * The hits of a search, read a page at a time. Each shard carries on
+     * from where its last page ended, and the shards' hits are merged by
+     * score, so reading the next page only collects as many hits from each
+     * shard as are needed for that page. Only the hits on a page are turned
+     * into verses.
+     * <p/>
+     * A cursor should only be used by one thread at a time, and must be
+     * closed once it's finished with.
+     */
+    public static class Cursor implements AutoCloseable {
+
+        private final List<BibleIndexShard.Hits> shardHits;
+        private final List<Deque<ScoreDoc>> buffers;
+        private final boolean[] exhausted;
+        private long totalHits = -1;
+        private int consumed;
+
+        private Cursor(List<BibleIndexShard.Hits> shardHits) {
+            this.shardHits = shardHits;
+            buffers = new ArrayList<>();
+            for (int i = 0; i < shardHits.size(); i++) {
+                buffers.add(new ArrayDeque<>());
+            }
+            exhausted = new boolean[shardHits.size()];
+        }
+
+        /**
+         * Get the next page of hits. Hits whose verses can't be found are
+         * left out, so a page may hold fewer hits than it covers - use the
+         * next offset of the page rather than its size to tell how far
+         * through the hits it got.
+         * <p/>
+         * @param count the maximum number of hits to get.
+         * @return the next page of hits, which is empty if the search
+         * failed.
+         */
+        public BibleSearchResults next(int count) {
+            int offset = consumed;
+            try {
+                fill(count);
+                List<BibleSearchResults.Hit> page = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    //Hits with the same score come in shard order
+                    int best = -1;
+                    for (int j = 0; j < buffers.size(); j++) {
+                        if (!buffers.get(j).isEmpty() && (best < 0 || buffers.get(j).peek().score > buffers.get(best).peek().score)) {
+                            best = j;
+                        }
+                    }
+                    if (best < 0) {
+                        break;
+                    }
+                    consumed++;
+                    BibleSearchResults.Hit hit = shardHits.get(best).resolve(buffers.get(best).poll());
+                    if (hit != null) {
+                        page.add(hit);
+                    }
+                }
+                return new BibleSearchResults(page, Math.max(totalHits, 0), offset, consumed);
+            }
+            catch (InterruptedException ex) {
+                //Thread is being shut down by other character being typed
+                Thread.currentThread().interrupt();
+            }
+            catch (ClosedByInterruptException | ThreadInterruptedException ex) {
+                //Ignore, thread is being shut down by other character being typed
+            }
+            catch (IOException | ExecutionException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't search bible index", ex);
+            }
+            return new BibleSearchResults(Collections.<BibleSearchResults.Hit>emptyList(), 0, offset, offset);
+        }
+
+        /**
+         * Make sure every shard has at least the given number of hits ready,
+         * or all its remaining hits, reading the next page of any that don't
+         * in parallel. Since a page can't take more hits than this from any
+         * one shard, none runs out while the page is being merged.
+         */
+        private void fill(int count) throws IOException, InterruptedException, ExecutionException {
+            Map<Integer, Future<ScoreDoc[]>> reads = new LinkedHashMap<>();
+            for (int i = 0; i < shardHits.size(); i++) {
+                if (!exhausted[i] && buffers.get(i).size() < count) {
+                    final BibleIndexShard.Hits hits = shardHits.get(i);
+                    reads.put(i, EXECUTOR.submit(() -> hits.next(count)));
+                }
+            }
+            ExecutionException failure = null;
+            for (Map.Entry<Integer, Future<ScoreDoc[]>> read : reads.entrySet()) {
+                try {
+                    ScoreDoc[] scoreDocs = read.getValue().get();
+                    Collections.addAll(buffers.get(read.getKey()), scoreDocs);
+                    exhausted[read.getKey()] = scoreDocs.length < count;
+                }
+                catch (ExecutionException ex) {
+                    failure = ex;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (totalHits < 0) {
+                totalHits = 0;
+                for (BibleIndexShard.Hits hits : shardHits) {
+                    totalHits += hits.getTotalHits();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            for (BibleIndexShard.Hits hits : shardHits) {
+                hits.close();
+            }
+        }
     }
 }
@@ -0,0 +1,151 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.lucene;
+
+import java.util.Collections;
+import java.util.List;
+import org.quelea.data.bible.BibleVerse;
+
+/**
+ * A page of verses found by searching the bible index, best match first.
+ * <p/>
+ * @author Michael
+ */
+public class BibleSearchResults {
+
+    private final List<Hit> hits;
+    private final long totalHits;
+    private final int offset;
+    private final int nextOffset;
+
+    /**
+     * Create a new page of results.
+     * <p/>
+     * @param hits the hits on this page.
+     * @param totalHits the total number of hits for the search.
+     * @param offset the position of the first hit on this page in all the
+     * hits.
+     * @param nextOffset the position of the first hit after this page in all
+     * the hits. This can be more than the offset plus the number of hits, if
+     * some hits on this page were left out.
+     */
+    public BibleSearchResults(List<Hit> hits, long totalHits, int offset, int nextOffset) {
+        this.hits = Collections.unmodifiableList(hits);
+        this.totalHits = totalHits;
+        this.offset = offset;
+        this.nextOffset = nextOffset;
+    }
+
+    /**
+     * Get the hits on this page.
+     * <p/>
+     * @return the hits on this page.
+     */
+    public List<Hit> getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the total number of hits for the search, across all pages.
+     * <p/>
+     * @return the total number of hits.
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * Get the position of the first hit on this page in all the hits.
+     * <p/>
+     * @return the offset of this page.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Get the position of the first hit after this page in all the hits.
+     * <p/>
+     * @return the offset of the next page.
+     */
+    public int getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Determine if there are more hits after this page.
+     * <p/>
+     * @return true if there's another page, false otherwise.
+     */
+    public boolean hasMore() {
+        return nextOffset < totalHits;
+    }
+
+    /**
+     * A verse that matched the search.
+     */
+    public static class Hit {
+
+        private final BibleVerse verse;
+        private final float score;
+        private final int[] offsets;
+
+        /**
+         * Create a new hit.
+         * <p/>
+         * @param verse the verse that matched.
+         * @param score how well the verse matched.
+         * @param offsets the start and end offsets of each match in the verse
+         * text, in pairs.
+         */
+        public Hit(BibleVerse verse, float score, int[] offsets) {
+            this.verse = verse;
+            this.score = score;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Get the verse that matched.
+         * <p/>
+         * @return the verse.
+         */
+        public BibleVerse getVerse() {
+            return verse;
+        }
+
+        /**
+         * Get how well the verse matched, higher is better.
+         * <p/>
+         * @return the score of this hit.
+         */
+        public float getScore() {
+            return score;
+        }
+
+        /**
+         * Get where the search matched in the text of the verse, as pairs of
+         * start (inclusive) and end (exclusive) character offsets.
+         * <p/>
+         * @return the match offsets, empty if they couldn't be worked out.
+         */
+        public int[] getOffsets() {
+            return offsets;
+        }
+    }
+}
@@ -18,14 +18,16 @@
  */
 package org.quelea.services.lucene;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -36,47 +38,90 @@ import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
 import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.complexPhrase.ComplexPhraseQueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.ThreadInterruptedException;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.services.utils.LoggerUtils;
+import org.quelea.services.utils.QueleaProperties;
 
 /**
  * The search index of songs.
+ * <p/>
+ * The index is kept on disk under the Quelea user home and stays open for the
+ * lifetime of the application - a single writer is used for all changes, and
+ * searches go through a near real time reader that's only refreshed after the
+ * index has been changed. The index is stamped with a checksum of the songs
+ * it was built from, so it only needs rebuilding at startup if the database
+ * has changed since it was last committed.
  *
  * @author Michael
  */
 public class SongSearchIndex implements SearchIndex<SongDisplayable> {
 
     private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final String STAMP_KEY = "quelea.songstamp";
+    private static final Pattern STRIP_PATTERN = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
     private final Analyzer analyzer;
     private final Directory index;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
     private final Map<Long, SongDisplayable> songs;
+    private final Map<Long, Long> songHashes;
+    private String committedStamp;
+    private long stampHash;
+    private boolean loaded;
 
     /**
-     * Create a new empty search index.
+     * Create a new search index, opening the persisted index if one exists.
      */
     public SongSearchIndex() {
-        songs = new HashMap<>();
+        songs = new ConcurrentHashMap<>();
+        songHashes = new ConcurrentHashMap<>();
         try {
             analyzer = CustomAnalyzer.builder()
                     .withTokenizer(StandardTokenizerFactory.class)
                     .addTokenFilter(LowerCaseFilterFactory.class)
                     .addTokenFilter(ASCIIFoldingFilterFactory.class)
                     .build();
-            index = new MMapDirectory(Files.createTempDirectory("quelea-mmap-song").toAbsolutePath());
+            Directory dir = null;
+            IndexWriter indexWriter;
+            String stamp = null;
+            try {
+                dir = new MMapDirectory(new File(QueleaProperties.get().getIndexDir(), "songs").toPath());
+                if (DirectoryReader.indexExists(dir)) {
+                    stamp = SegmentInfos.readLatestCommit(dir).getUserData().get(STAMP_KEY);
+                }
+                indexWriter = new IndexWriter(dir, new IndexWriterConfig(analyzer));
+            }
+            catch(IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't open persistent song index, falling back to an in-memory index", ex);
+                if(dir != null) {
+                    dir.close();
+                }
+                stamp = null;
+                dir = new ByteBuffersDirectory();
+                indexWriter = new IndexWriter(dir, new IndexWriterConfig(analyzer));
+            }
+            index = dir;
+            writer = indexWriter;
+            committedStamp = stamp;
+            searcherManager = new SearcherManager(writer, null);
         }
         catch(IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't create song search index");
@@ -96,43 +141,80 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public void add(SongDisplayable song) {
-        List<SongDisplayable> songList = new ArrayList<>();
-        songList.add(song);
-        addAll(songList);
+        addAll(Collections.singletonList(song));
     }
 
     /**
-     * Add a number of songs to the index. This is much more efficient than
-     * calling add() repeatedly because it just uses one writer rather than
-     * opening and closing one for each individual operation.
+     * Add a number of songs to the index. This is more efficient than calling
+     * add() repeatedly because the reader is only refreshed once at the end.
      *
      * @param songList the song list to add.
      */
     @Override
     public synchronized void addAll(Collection<? extends SongDisplayable> songList) {
-        Pattern p = Pattern.compile("[^\\w\\s]", Pattern.UNICODE_CHARACTER_CLASS);
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
+        try {
             for (SongDisplayable song : songList) {
-                Document doc = new Document();
-                if (song.getTitle() != null) {
-                    doc.add(new TextField("title", p.matcher(song.getTitle()).replaceAll(""), Field.Store.NO));
-                }
-                if (song.getAuthor() != null) {
-                    doc.add(new TextField("author", p.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO));
-                }
-                if (song.getLyrics(false, false) != null) {
-                    doc.add(new TextField("lyrics", p.matcher(song.getLyrics(false, false)).replaceAll(""), Field.Store.NO));
-                }
-                doc.add(new TextField("number", p.matcher(Long.toString(song.getID())).replaceAll(""), Field.Store.YES));
-                writer.addDocument(doc);
-                songs.put(song.getID(), song);
+                writer.updateDocument(new Term("number", Long.toString(song.getID())), createDocument(song));
+                putSong(song);
                 LOGGER.log(Level.FINE, "Added song to index: {0}", song.getTitle());
             }
+            searcherManager.maybeRefreshBlocking();
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't add value to index", ex);
         }
     }
 
+    /**
+     * Fill this index with the given songs, which should be the entire
+     * contents of the song database. If the persisted index was committed
+     * from exactly these songs it's reused as is, otherwise it's rebuilt.
+     *
+     * @param songList all the songs in the database.
+     */
+    public synchronized void load(Collection<? extends SongDisplayable> songList) {
+        loaded = true;
+        songs.clear();
+        songHashes.clear();
+        stampHash = 0;
+        for (SongDisplayable song : songList) {
+            putSong(song);
+        }
+        if (getStamp().equals(committedStamp)) {
+            LOGGER.log(Level.INFO, "Song index is up to date, reusing {0} indexed songs", songs.size());
+            return;
+        }
+        LOGGER.log(Level.INFO, "Song index out of date, rebuilding with {0} songs", songs.size());
+        try {
+            writer.deleteAll();
+            for (SongDisplayable song : songList) {
+                writer.addDocument(createDocument(song));
+            }
+            commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't rebuild song index", ex);
+        }
+    }
+
+    /**
+     * Fill this index with songs from a library snapshot, so it can be
+     * searched before the database has been loaded. This only has an effect
+     * if the persisted index was committed from the same library as the
+     * snapshot, and the index hasn't already been loaded from the database.
+     *
+     * @param songList the songs in the snapshot.
+     * @param stamp the stamp of the library the snapshot was taken from.
+     */
+    public synchronized void preload(SongDisplayable[] songList, String stamp) {
+        if (loaded || !stamp.equals(committedStamp)) {
+            return;
+        }
+        for (SongDisplayable song : songList) {
+            putSong(song);
+        }
+        LOGGER.log(Level.INFO, "Preloaded {0} songs into index from snapshot", songs.size());
+    }
+
     /**
      * Remove the given song from the index.
      *
@@ -140,8 +222,14 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void remove(SongDisplayable song) {
-        try (IndexWriter writer = new IndexWriter(index, new IndexWriterConfig(analyzer))) {
+        try {
             writer.deleteDocuments(new Term("number", Long.toString(song.getID())));
+            songs.remove(song.getID());
+            Long hash = songHashes.remove(song.getID());
+            if (hash != null) {
+                stampHash ^= hash;
+            }
+            searcherManager.maybeRefreshBlocking();
         } catch (IOException ex) {
             LOGGER.log(Level.SEVERE, "Couldn't remove value from index", ex);
         }
@@ -154,7 +242,6 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public void update(SongDisplayable song) {
-        remove(song);
         add(song);
     }
 
@@ -164,7 +251,7 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      * @param id the id of the song.
      * @return the song with the given id.
      */
-    public synchronized SongDisplayable getByID(long id) {
+    public SongDisplayable getByID(long id) {
         return songs.get(id);
     }
 
@@ -177,7 +264,7 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      * @return an array of songs that match the filter.
      */
     @Override
-    public synchronized SongDisplayable[] filter(String queryString, FilterType type) {
+    public SongDisplayable[] filter(String queryString, FilterType type) {
         String sanctifyQueryString = SearchIndexUtils.makeLuceneQuery(queryString);
         if (songs.isEmpty() || sanctifyQueryString.trim().isEmpty()) {
             return songs.values().toArray(new SongDisplayable[songs.size()]);
@@ -194,8 +281,9 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
             return new SongDisplayable[0];
         }
         List<SongDisplayable> ret;
-        try (DirectoryReader dr = DirectoryReader.open(index)) {
-            IndexSearcher searcher = new IndexSearcher(dr);
+        IndexSearcher searcher = null;
+        try {
+            searcher = searcherManager.acquire();
             Query q = new ComplexPhraseQueryParser(typeStr, analyzer).parse(sanctifyQueryString);
             TopScoreDocCollector collector = TopScoreDocCollector.create(1000,10000);
             searcher.search(q, collector);
@@ -206,7 +294,9 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
                 Document d = searcher.doc(docId);
                 final Long songNumber = Long.parseLong(d.get("number"));
                 SongDisplayable song = songs.get(songNumber);
-                ret.add(song);
+                if (song != null) {
+                    ret.add(song);
+                }
             }
             if (type == FilterType.BODY) {
                 for (SongDisplayable song : filter(queryString, FilterType.TITLE)) {
@@ -223,6 +313,16 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
             LOGGER.log(Level.WARNING, "Invalid query string: " + sanctifyQueryString, ex);
             return new SongDisplayable[0];
         }
+        finally {
+            if (searcher != null) {
+                try {
+                    searcherManager.release(searcher);
+                }
+                catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Couldn't release searcher", ex);
+                }
+            }
+        }
     }
 
     /**
@@ -230,6 +330,89 @@ public class SongSearchIndex implements SearchIndex<SongDisplayable> {
      */
     @Override
     public synchronized void clear() {
-        SearchIndexUtils.clearIndex(index);
+        try {
+            writer.deleteAll();
+            songs.clear();
+            songHashes.clear();
+            stampHash = 0;
+            committedStamp = null;
+            searcherManager.maybeRefreshBlocking();
+        }
+        catch(IOException ex) {
+            LOGGER.log(Level.SEVERE, "Couldn't clear the index", ex);
+        }
+    }
+
+    /**
+     * Commit any outstanding changes and close this index. Should be called
+     * on exit so the next startup can reuse the index.
+     */
+    public synchronized void close() {
+        try {
+            commit();
+            searcherManager.close();
+            writer.close();
+            index.close();
+        }
+        catch(IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close song index", ex);
+        }
+    }
+
+    private void commit() throws IOException {
+        String stamp = getStamp();
+        writer.setLiveCommitData(Collections.singletonMap(STAMP_KEY, stamp).entrySet());
+        writer.commit();
+        committedStamp = stamp;
+    }
+
+    private Document createDocument(SongDisplayable song) {
+        Document doc = new Document();
+        if (song.getTitle() != null) {
+            doc.add(new TextField("title", STRIP_PATTERN.matcher(song.getTitle()).replaceAll(""), Field.Store.NO));
+        }
+        if (song.getAuthor() != null) {
+            doc.add(new TextField("author", STRIP_PATTERN.matcher(song.getAuthor()).replaceAll(""), Field.Store.NO));
+        }
+        doc.add(new TextField("lyrics", song.getParsedLyrics().getSearchText(), Field.Store.NO));
+        doc.add(new StringField("number", Long.toString(song.getID()), Field.Store.YES));
+        return doc;
+    }
+
+    private void putSong(SongDisplayable song) {
+        songs.put(song.getID(), song);
+        long hash = hash(song);
+        Long oldHash = songHashes.put(song.getID(), hash);
+        if (oldHash != null) {
+            stampHash ^= oldHash;
+        }
+        stampHash ^= hash;
+    }
+
+    /**
+     * Get a stamp identifying the songs currently in this index. Two indexes
+     * containing the same songs will have the same stamp.
+     *
+     * @return the stamp of this index.
+     */
+    public synchronized String getStamp() {
+        return songs.size() + ":" + Long.toHexString(stampHash);
+    }
+
+    /**
+     * Hash the indexed content of a song. The hashes of all songs are XOR'd
+     * together to form the stamp, so it can be updated as songs change.
+     */
+    private static long hash(SongDisplayable song) {
+        long h = song.getID();
+        h = 31 * h + Objects.hashCode(song.getTitle());
+        h = 31 * h + Objects.hashCode(song.getAuthor());
+        h = 31 * h + Objects.hashCode(song.getLyrics(false, false));
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= (h >>> 33);
+        return h;
     }
 }
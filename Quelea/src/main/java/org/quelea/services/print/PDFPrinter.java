@@ -17,17 +17,21 @@
  */
 package org.quelea.services.print;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.transform.Result;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
@@ -35,7 +39,6 @@ import javax.xml.transform.stream.StreamSource;
 import org.apache.avalon.framework.configuration.Configuration;
 import org.apache.avalon.framework.configuration.ConfigurationException;
 import org.apache.avalon.framework.configuration.DefaultConfigurationBuilder;
-import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.apps.Fop;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.apps.FopFactoryBuilder;
@@ -44,16 +47,31 @@ import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Responsible for printing to PDF (using xml and xslt.)
+ * <p/>
+ * The FOP factory is set up from fopcfg.xml once, and each stylesheet is
+ * compiled once and kept (until the file changes), so printing lots of
+ * things with the same stylesheet only pays for that the first time. Both are
+ * safe to share, so PDFs can be rendered on several threads at once.
  *
  * @author Michael
  */
 public class PDFPrinter {
 
+    private static final Map<File, CompiledStylesheet> STYLESHEETS = new ConcurrentHashMap<>();
     private static FopFactory fopFactory;
-    private static FopFactoryBuilder builder;
-    private static FOUserAgent foUserAgent;
     private static TransformerFactory tranFactory;
 
+    private static final class CompiledStylesheet {
+
+        private final long lastModified;
+        private final Templates templates;
+
+        private CompiledStylesheet(long lastModified, Templates templates) {
+            this.lastModified = lastModified;
+            this.templates = templates;
+        }
+    }
+
     /**
      * Print a PDF file.
      *
@@ -62,35 +80,65 @@ public class PDFPrinter {
      * @param pdfFile the file to print to.
      * @throws IOException if anything goes wrong.
      */
-    @SuppressWarnings("unchecked")
     public void print(String xml, File xsltfile, File pdfFile) throws IOException {
-        try {
-            InputStream stream = new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
-            StreamSource source = new StreamSource(stream);
-            StreamSource transformSource = new StreamSource(xsltfile);
-            DefaultConfigurationBuilder cfgBuilder = new DefaultConfigurationBuilder();
-            Configuration cfg = cfgBuilder.buildFromFile(new File("fopcfg.xml"));
-
-            if (builder == null) {
-                builder = new FopFactoryBuilder(new URI("."));
-                builder.setConfiguration(cfg);
-                fopFactory = builder.build();
-                foUserAgent = fopFactory.newFOUserAgent();
-                tranFactory = TransformerFactory.newInstance();
-            }
-
-            ByteArrayOutputStream outStream = new ByteArrayOutputStream();
-            Transformer xslfoTransformer = tranFactory.newTransformer(transformSource);
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        print(xml, xsltfile, outStream);
+        try (OutputStream str = new BufferedOutputStream(new FileOutputStream(pdfFile))) {
+            outStream.writeTo(str);
+        }
+    }
 
-            Fop fop = fopFactory.newFop("application/pdf", foUserAgent, outStream);
+    /**
+     * Print a PDF to a stream. This may be called from several threads at
+     * once.
+     *
+     * @param xml the content to use for printing.
+     * @param xsltfile the stylesheet to use for printing.
+     * @param out the stream to write the PDF to. It's left open.
+     * @throws IOException if anything goes wrong.
+     */
+    public void print(String xml, File xsltfile, OutputStream out) throws IOException {
+        try {
+            StreamSource source = new StreamSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            Templates templates = getTemplates(xsltfile);
+            FopFactory factory = getFopFactory();
+            Fop fop = factory.newFop("application/pdf", factory.newFOUserAgent(), out);
             Result res = new SAXResult((DefaultHandler) fop.getDefaultHandler());
-            xslfoTransformer.transform(source, res);
-
-            try (FileOutputStream str = new FileOutputStream(pdfFile)) {
-                str.write(outStream.toByteArray());
-            }
+            templates.newTransformer().transform(source, res);
         } catch (IOException | URISyntaxException | TransformerException | ConfigurationException | SAXException ex) {
             throw new IOException("Error printing to PDF", ex);
         }
     }
+
+    private static synchronized FopFactory getFopFactory() throws URISyntaxException, ConfigurationException, SAXException, IOException {
+        if (fopFactory == null) {
+            Configuration cfg = new DefaultConfigurationBuilder().buildFromFile(new File("fopcfg.xml"));
+            FopFactoryBuilder builder = new FopFactoryBuilder(new URI("."));
+            builder.setConfiguration(cfg);
+            fopFactory = builder.build();
+        }
+        return fopFactory;
+    }
+
+    /**
+     * Get the compiled form of a stylesheet, compiling it if it hasn't been
+     * compiled yet or has changed since it was.
+     */
+    private static Templates getTemplates(File xsltfile) throws TransformerConfigurationException {
+        File key = xsltfile.getAbsoluteFile();
+        long lastModified = key.lastModified();
+        CompiledStylesheet stylesheet = STYLESHEETS.get(key);
+        if (stylesheet == null || stylesheet.lastModified != lastModified) {
+            Templates templates;
+            synchronized (PDFPrinter.class) {
+                if (tranFactory == null) {
+                    tranFactory = TransformerFactory.newInstance();
+                }
+                templates = tranFactory.newTemplates(new StreamSource(key));
+            }
+            stylesheet = new CompiledStylesheet(lastModified, templates);
+            STYLESHEETS.put(key, stylesheet);
+        }
+        return stylesheet.templates;
+    }
 }
@@ -19,6 +19,7 @@ package org.quelea.services.print;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import org.quelea.data.displayable.SongDisplayable;
 
 /**
@@ -37,4 +38,8 @@ public class SongPDFPrinter extends PDFPrinter {
         print(song.getPrintXML(includeTranslations), new File("songformat.xsl"), pdfFile);
     }
 
+    public void print(SongDisplayable song, OutputStream out, boolean includeTranslations) throws IOException {
+        print(song.getPrintXML(includeTranslations), new File("songformat.xsl"), out);
+    }
+
 }
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Works out the Levenshtein distance between one string and others, giving up
+ * as soon as the distance is known to be over a threshold.
+ * <p/>
+ * This uses Myers' bit-parallel algorithm (in Hyyro's form for strings longer
+ * than 64 characters), which works out 64 cells of the distance matrix at a
+ * time, so comparing two songs' lyrics takes a few thousand long operations
+ * rather than millions of table lookups. A single instance is immutable and
+ * may be used from multiple threads.
+ * <p/>
+ * @author Michael
+ */
+public class BoundedEditDistance {
+
+    private static final long[] NO_MATCH = new long[0];
+    private final int length;
+    private final int blocks;
+    private final long lastBit;
+    private final Map<Character, long[]> peq;
+
+    /**
+     * Prepare to compare the given string against others.
+     * <p/>
+     * @param str the string the others will be compared to.
+     */
+    public BoundedEditDistance(String str) {
+        length = str.length();
+        blocks = (length + 63) / 64;
+        lastBit = 1L << ((length - 1) & 63);
+        peq = new HashMap<>();
+        for (int i = 0; i < length; i++) {
+            long[] bits = peq.computeIfAbsent(str.charAt(i), c -> new long[blocks]);
+            bits[i / 64] |= 1L << (i & 63);
+        }
+    }
+
+    /**
+     * Get the Levenshtein distance between two strings, if it's no more than
+     * the given maximum.
+     * <p/>
+     * @param s1 the first string.
+     * @param s2 the second string.
+     * @param max the maximum distance of interest.
+     * @return the distance, or -1 if it's more than max.
+     */
+    public static int distance(String s1, String s2, int max) {
+        //The longer string is the one that's scanned, the shorter one is packed into bits
+        if (s1.length() > s2.length()) {
+            return new BoundedEditDistance(s2).distance(s1, max);
+        }
+        return new BoundedEditDistance(s1).distance(s2, max);
+    }
+
+    /**
+     * Get the Levenshtein distance between the string given to this object and
+     * another, if it's no more than the given maximum.
+     * <p/>
+     * @param other the other string.
+     * @param max the maximum distance of interest.
+     * @return the distance, or -1 if it's more than max.
+     */
+    public int distance(String other, int max) {
+        int otherLength = other.length();
+        if (Math.abs(length - otherLength) > max) {
+            return -1;
+        }
+        if (length == 0) {
+            return otherLength;
+        }
+        long[] pv = new long[blocks];
+        long[] mv = new long[blocks];
+        for (int b = 0; b < blocks; b++) {
+            pv[b] = -1L;
+        }
+        int score = length;
+        for (int j = 0; j < otherLength; j++) {
+            long[] eqs = peq.getOrDefault(other.charAt(j), NO_MATCH);
+            int hin = 1; //The top row of the matrix goes up by one each column
+            for (int b = 0; b < blocks; b++) {
+                long eq = eqs == NO_MATCH ? 0 : eqs[b];
+                long pvb = pv[b];
+                long mvb = mv[b];
+                long xv = eq | mvb;
+                if (hin < 0) {
+                    eq |= 1;
+                }
+                long xh = (((eq & pvb) + pvb) ^ pvb) | eq;
+                long ph = mvb | ~(xh | pvb);
+                long mh = pvb & xh;
+                long topBit = b == blocks - 1 ? lastBit : Long.MIN_VALUE;
+                int hout = 0;
+                if ((ph & topBit) != 0) {
+                    hout = 1;
+                } else if ((mh & topBit) != 0) {
+                    hout = -1;
+                }
+                ph <<= 1;
+                mh <<= 1;
+                if (hin < 0) {
+                    mh |= 1;
+                } else if (hin > 0) {
+                    ph |= 1;
+                }
+                pv[b] = mh | ~(xv | ph);
+                mv[b] = ph & xv;
+                hin = hout;
+            }
+            score += hin;
+            //Each remaining column can bring the distance down by at most one
+            if (score - (otherLength - j - 1) > max) {
+                return -1;
+            }
+        }
+        return score <= max ? score : -1;
+    }
+}
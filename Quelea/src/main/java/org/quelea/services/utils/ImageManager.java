@@ -5,7 +5,16 @@
  */
 package org.quelea.services.utils;
 
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javafx.scene.image.Image;
 import javafx.scene.paint.Color;
 
@@ -13,29 +22,43 @@ import javafx.scene.paint.Color;
  * An image manager that should be used to deal with all large images (to keep
  * memory overhead to a minimum.)
  * <p>
+ * Decoded images are kept in a cache of limited size (set by the
+ * image.cache.size property, in megabytes), keyed by their URI and the size
+ * they were asked for, with the least recently used images dropped when it's
+ * full. Images can also be decoded in the background, and if the same image
+ * is asked for while it's being decoded the caller just waits for it.
+ * <p>
  * @author Michael
  */
 public class ImageManager {
 
+    private static final Logger LOGGER = LoggerUtils.getLogger();
     public static final ImageManager INSTANCE = new ImageManager();
-    /**
-     * Could possibly be a soft hashmap in future to aid with caching even when
-     * a reference isn't elsewhere? Not sure we need this for now though, so
-     * leaving as is.
-     */
-    private final WeakHashMap<String, Image> images;
+    private static final ExecutorService DECODE_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), r -> {
+                Thread thread = new Thread(r, "image-decode");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final SizedLRUCache<String, Image> images;
+    private final ConcurrentMap<String, CompletableFuture<Image>> pending;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
 
     private ImageManager() {
-        images = new WeakHashMap<>();
+        long maxSize = QueleaProperties.get().getImageCacheSize() * 1024L * 1024L;
+        images = new SizedLRUCache<>(maxSize, image -> (long) image.getWidth() * (long) image.getHeight() * 4);
+        pending = new ConcurrentHashMap<>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
     }
 
     /**
      * Get an image from a uri. This will load the full image into memory,
      * whatever its size. If you just need a preview of an image, then use the
      * other method in this class to load a smaller version! Images returned
-     * using this method are cached, so if the same image is being used
-     * elsewhere that points to this file, you'll get the same image object back
-     * (as long as the previous image was obtained through this method.)
+     * using this method are cached, so if the same image is still in the
+     * cache you'll get the same image object back.
      * <p>
      * @param uri the URI to load.
      * @return the image at this URI.
@@ -44,28 +67,175 @@ public class ImageManager {
         if(uri == null) {
             return Utils.getImageFromColour(Color.BLACK);
         }
-        Image img = images.get(uri);
-        if(img == null) {
-            img = new Image(uri);
-            images.put(uri, img);
-        }
-        return img;
+        return get(getKey(uri, 0, 0, false), () -> new Image(uri));
     }
 
     /**
-     * Get an image with a particular size. Images using this method are not
-     * cached at present, so only use for small images. (We could cache in the
-     * future if necessary.)
+     * Get an image with a particular size. These are cached separately from
+     * the full size image, and from other sizes of the same image.
      * <p>
      * @param uri the URI of the image to load.
      * @param width the width of the image.
      * @param height the height of the image.
      * @param preserveRatio true if the aspect ratio should be preserved, false
      * otherwise.
-     * @return
+     * @return the image at this URI, at the given size.
      */
     public Image getImage(String uri, double width, double height, boolean preserveRatio) {
-        return new Image(uri, width, height, preserveRatio, true);
+        return get(getKey(uri, width, height, preserveRatio), () -> new Image(uri, width, height, preserveRatio, false));
+    }
+
+    /**
+     * Get an image from a uri, decoding it in the background if it isn't
+     * cached.
+     * <p>
+     * @param uri the URI to load.
+     * @return the image at this URI, as soon as it's been decoded.
+     */
+    public CompletableFuture<Image> getImageAsync(String uri) {
+        if(uri == null) {
+            return CompletableFuture.completedFuture(Utils.getImageFromColour(Color.BLACK));
+        }
+        return getAsync(getKey(uri, 0, 0, false), () -> new Image(uri));
+    }
+
+    /**
+     * Get an image with a particular size, decoding it in the background if
+     * it isn't cached.
+     * <p>
+     * @param uri the URI of the image to load.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     * @param preserveRatio true if the aspect ratio should be preserved, false
+     * otherwise.
+     * @return the image at this URI, at the given size, as soon as it's been
+     * decoded.
+     */
+    public CompletableFuture<Image> getImageAsync(String uri, double width, double height, boolean preserveRatio) {
+        return getAsync(getKey(uri, width, height, preserveRatio), () -> new Image(uri, width, height, preserveRatio, false));
+    }
+
+    /**
+     * Get the number of times an image has been found in the cache (or
+     * already being decoded.)
+     * <p>
+     * @return the number of cache hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of times an image has had to be decoded.
+     * <p>
+     * @return the number of cache misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of images that have been dropped from the cache to make
+     * room for others.
+     * <p>
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return images.getEvictions();
+    }
+
+    private Image get(String key, Supplier<Image> loader) {
+        Image img = images.get(key);
+        if(img != null) {
+            hits.incrementAndGet();
+            return img;
+        }
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> future = pending.putIfAbsent(key, created);
+        if(future != null) {
+            hits.incrementAndGet();
+            return join(future);
+        }
+        decode(key, loader, created);
+        return join(created);
+    }
+
+    private CompletableFuture<Image> getAsync(String key, Supplier<Image> loader) {
+        Image img = images.get(key);
+        if(img != null) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(img);
+        }
+        CompletableFuture<Image> created = new CompletableFuture<>();
+        CompletableFuture<Image> future = pending.putIfAbsent(key, created);
+        if(future != null) {
+            hits.incrementAndGet();
+            return future;
+        }
+        DECODE_EXECUTOR.execute(() -> decode(key, loader, created));
+        return created;
+    }
+
+    /**
+     * Decode an image and cache it, completing the given future (which is
+     * in the pending map, so anyone else after the same image waits for this
+     * one) when it's done.
+     */
+    private void decode(String key, Supplier<Image> loader, CompletableFuture<Image> created) {
+        try {
+            //It may have been cached between checking the cache and adding the future
+            Image decoded = images.get(key);
+            if(decoded == null) {
+                misses.incrementAndGet();
+                decoded = loader.get();
+                put(key, decoded);
+            }
+            else {
+                hits.incrementAndGet();
+            }
+            created.complete(decoded);
+        }
+        catch(RuntimeException | Error ex) {
+            created.completeExceptionally(ex);
+        }
+        finally {
+            pending.remove(key, created);
+        }
+    }
+
+    /**
+     * Wait for an image, throwing whatever went wrong decoding it as it was
+     * thrown rather than wrapped up.
+     */
+    private static Image join(CompletableFuture<Image> future) {
+        try {
+            return future.join();
+        }
+        catch(CompletionException ex) {
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if(ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void put(String key, Image img) {
+        if(img.isError()) {
+            LOGGER.log(Level.INFO, "Couldn''t load image {0}", key);
+        }
+        else {
+            images.put(key, img);
+        }
+    }
+
+    private static String getKey(String uri, double width, double height, boolean preserveRatio) {
+        if(width <= 0 && height <= 0) {
+            return uri;
+        }
+        return uri + "#" + width + "x" + height + (preserveRatio ? "r" : "");
     }
 
 }
@@ -0,0 +1,51 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ * 
+ * 
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map that holds at most a fixed number of entries, evicting the least
+ * recently used entry when it's full. Not thread safe - wrap it with
+ * Collections.synchronizedMap() or synchronise externally if needed.
+ * <p/>
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author Michael
+ */
+public class LRUCache<K, V> extends LinkedHashMap<K, V> {
+
+    private final int maxEntries;
+
+    /**
+     * Create a new cache.
+     * <p/>
+     * @param maxEntries the maximum number of entries to hold.
+     */
+    public LRUCache(int maxEntries) {
+        super(16, 0.75f, true);
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maxEntries;
+    }
+}
@@ -17,8 +17,11 @@
  */
 package org.quelea.services.utils;
 
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.regex.Pattern;
 
 /**
  * Checks the type of the line.
@@ -38,6 +41,12 @@ public class LineTypeChecker {
 
     }
 
+    private static final Pattern TIMES_AFTER = Pattern.compile("[xX][0-9]+");
+    private static final Pattern TIMES_BEFORE = Pattern.compile("[0-9]+[xX]");
+    private static final String[] CHORD_WORDS = {"sus", "dim", "maj", "dom", "min", "aug", "add"};
+    private static final String[] TITLE_WORDS = {"verse", "chorus", "tag", "pre-chorus", "pre chorus",
+        "coda", "bridge", "intro", "outro", "interlude", "ending"};
+    private static final Map<String, Type> TYPE_CACHE = Collections.synchronizedMap(new LRUCache<>(4096));
     private final String line;
 
     /**
@@ -54,7 +63,9 @@ public class LineTypeChecker {
     }
 
     /**
-     * Get the line type.
+     * Get the line type. The type of recently checked lines is remembered, so
+     * checking the same lines again (as happens each time a song is laid out)
+     * is cheap.
      *
      * @return the type of the line.
      */
@@ -62,6 +73,15 @@ public class LineTypeChecker {
         if(line==null) {
             return null;
         }
+        Type type = TYPE_CACHE.get(line);
+        if (type == null) {
+            type = checkLineType();
+            TYPE_CACHE.put(line, type);
+        }
+        return type;
+    }
+
+    private Type checkLineType() {
         if (checkTitle()) {
             return Type.TITLE;
         } else if (checkChords()) {
@@ -88,54 +108,170 @@ public class LineTypeChecker {
         if (line.trim().isEmpty()) {
             return false;
         }
-        if (line.toLowerCase().endsWith("//chords")) {
+        if (endsWithIgnoreCase(line, "//chords")) {
             return true;
         }
-        if (line.toLowerCase().endsWith("//lyrics")) {
+        if (endsWithIgnoreCase(line, "//lyrics")) {
             return false;
         }
-        String checkLine = line.replace('-', ' ');
-        checkLine = checkLine.replace('(', ' ');
-        checkLine = checkLine.replace(')', ' ');
-        checkLine = checkLine.replaceAll("[xX][0-9]+", "");
-        checkLine = checkLine.replaceAll("[0-9]+[xX]", "");
-        for (String s : checkLine.split("\\s")) {
-            if (s.trim().isEmpty()) {
-                continue;
+        String checkLine = line;
+        if (checkLine.indexOf('x') != -1 || checkLine.indexOf('X') != -1) {
+            checkLine = TIMES_AFTER.matcher(checkLine).replaceAll("");
+            checkLine = TIMES_BEFORE.matcher(checkLine).replaceAll("");
+        }
+        int tokenStart = 0;
+        for (int i = 0; i <= checkLine.length(); i++) {
+            if (i == checkLine.length() || isChordSeparator(checkLine.charAt(i))) {
+                if (i > tokenStart && !isChord(checkLine, tokenStart, i)) {
+                    return false;
+                }
+                tokenStart = i + 1;
             }
-            if (!s.matches("^" + CHORD_REGEX + "$")) {
+        }
+        return true;
+    }
+
+    /**
+     * Separators between chords - whitespace (as matched by \s), and dashes
+     * and brackets, which are ignored.
+     */
+    private static boolean isChordSeparator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case '-':
+            case '(':
+            case ')':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check whether the given part of a line is made up of chords, as matched
+     * by CHORD_REGEX. That comes down to a run of note letters, digits,
+     * accidentals, slashes and chord qualities, which is checked in one pass
+     * keeping track of which positions a run of those can reach (the quality
+     * words are 3 letters long, so only the next 3 positions matter.)
+     */
+    private static boolean isChord(String str, int start, int end) {
+        int reachable = 1;
+        for (int i = start; i < end; i++) {
+            if ((reachable & 1) != 0) {
+                if (isChordChar(str.charAt(i))) {
+                    reachable |= 2;
+                }
+                if (end - i >= 3) {
+                    for (String word : CHORD_WORDS) {
+                        if (str.startsWith(word, i)) {
+                            reachable |= 8;
+                            break;
+                        }
+                    }
+                }
+            }
+            reachable >>>= 1;
+            if (reachable == 0) {
                 return false;
             }
         }
+        return (reachable & 1) != 0;
+    }
 
-        return true;
+    private static boolean isChordChar(char c) {
+        if ((c >= 'a' && c <= 'h') || (c >= 'A' && c <= 'H') || (c >= '0' && c <= '9')) {
+            return true;
+        }
+        switch (c) {
+            case '/':
+            case '#':
+            case '♯':
+            case '♭':
+            case 'º':
+            case 'ø':
+            case '+':
+            case 'm':
+            case 'M':
+                return true;
+            default:
+                return false;
+        }
     }
 
     /**
-     * Check whether this line is the title of a section.
+     * Check whether this line is the title of a section. Brackets of any kind
+     * are ignored.
      *
      * @return true if it's the title of a section, false otherwise.
      */
     private boolean checkTitle() {
-        String processedLine = line.toLowerCase().trim()
-                .replace("{", "").replace("}", "")
-                .replace("[", "").replace("]", "")
-                .replace("<", "").replace(">", "")
-                .replace("(", "").replace(")", "");
-        if (processedLine.endsWith("//title")) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (matchesTitleWord("//title", start, end, false)) {
             return true;
         }
-        return processedLine.toLowerCase().startsWith("verse")
-                || processedLine.toLowerCase().startsWith("chorus")
-                || processedLine.toLowerCase().startsWith("tag")
-                || processedLine.toLowerCase().startsWith("pre-chorus")
-                || processedLine.toLowerCase().startsWith("pre chorus")
-                || processedLine.toLowerCase().startsWith("coda")
-                || processedLine.toLowerCase().startsWith("bridge")
-                || processedLine.toLowerCase().startsWith("intro")
-                || processedLine.toLowerCase().startsWith("outro")
-                || processedLine.toLowerCase().startsWith("interlude")
-                || processedLine.toLowerCase().startsWith("ending");
+        for (String word : TITLE_WORDS) {
+            if (matchesTitleWord(word, start, end, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the given part of the line starts (or ends) with the
+     * given lower case word, ignoring case and brackets.
+     */
+    private boolean matchesTitleWord(String word, int start, int end, boolean atStart) {
+        int wordPos = atStart ? 0 : word.length() - 1;
+        int linePos = atStart ? start : end - 1;
+        int step = atStart ? 1 : -1;
+        while (wordPos >= 0 && wordPos < word.length()) {
+            if (linePos < start || linePos >= end) {
+                return false;
+            }
+            char c = line.charAt(linePos);
+            linePos += step;
+            if (isBracket(c)) {
+                continue;
+            }
+            if (Character.toLowerCase(c) != word.charAt(wordPos)) {
+                return false;
+            }
+            wordPos += step;
+        }
+        return true;
+    }
+
+    private static boolean isBracket(char c) {
+        switch (c) {
+            case '{':
+            case '}':
+            case '[':
+            case ']':
+            case '<':
+            case '>':
+            case '(':
+            case ')':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean endsWithIgnoreCase(String str, String suffix) {
+        return str.regionMatches(true, str.length() - suffix.length(), suffix, 0, suffix.length());
     }
 
     private static final TreeMap<String, String> titleMap = new TreeMap<>();
@@ -0,0 +1,203 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Writes log records to the debug log on a background thread, so logging
+ * never waits on the disk.
+ * <p/>
+ * Records are put on a bounded queue without locking, and the writer thread
+ * takes them off in batches, writing each batch to the file (which is kept
+ * open) and flushing once. If the queue is full the record is dropped and
+ * counted, and a line saying how many were dropped is written with the next
+ * batch. When the log gets too big it's moved aside to a backup file and a
+ * new one started, so only the last couple of logs' worth is kept.
+ * <p/>
+ * @author Michael
+ */
+final class LogWriter {
+
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int BATCH_SIZE = 500;
+    private static final long IDLE_WAIT = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_FILE_SIZE = 5 * 1024 * 1024;
+    private final Supplier<File> fileSupplier;
+    private final Queue<LogRecord> queue;
+    private final AtomicInteger queued;
+    private final AtomicLong dropped;
+    private final SimpleFormatter formatter;
+    private final Thread thread;
+    private File file;
+    private Writer writer;
+    private long fileSize;
+
+    /**
+     * Create a new log writer and start its thread.
+     * <p/>
+     * @param fileSupplier supplies the file to write to, or null if it isn't
+     * known yet (records written before then are discarded.)
+     */
+    LogWriter(Supplier<File> fileSupplier) {
+        this.fileSupplier = fileSupplier;
+        queue = new ConcurrentLinkedQueue<>();
+        queued = new AtomicInteger();
+        dropped = new AtomicLong();
+        formatter = new SimpleFormatter();
+        thread = new Thread(this::run, "log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "log-writer-shutdown"));
+    }
+
+    /**
+     * Queue a record to be written. Never blocks - if the queue is full the
+     * record is dropped.
+     * <p/>
+     * @param record the record to write.
+     */
+    void write(LogRecord record) {
+        int size;
+        do {
+            size = queued.get();
+            if (size >= QUEUE_CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!queued.compareAndSet(size, size + 1));
+        queue.add(record);
+        if (size == 0) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            if (!writeBatch()) {
+                LockSupport.parkNanos(this, IDLE_WAIT);
+            }
+        }
+    }
+
+    /**
+     * Write everything that's queued, for when Quelea is shutting down.
+     */
+    private void flush() {
+        while (writeBatch()) {
+            //Keep going until the queue is empty
+        }
+    }
+
+    /**
+     * Take a batch of records off the queue and write them.
+     * <p/>
+     * @return true if anything was taken off the queue, false if it was
+     * empty.
+     */
+    private synchronized boolean writeBatch() {
+        long droppedCount = dropped.getAndSet(0);
+        int count = 0;
+        StringBuilder batch = new StringBuilder();
+        if (droppedCount > 0) {
+            batch.append(droppedCount).append(" log records dropped, the log couldn't keep up").append(System.lineSeparator());
+        }
+        LogRecord record;
+        while (count < BATCH_SIZE && (record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            count++;
+            batch.append(formatter.format(record)).append(System.lineSeparator());
+        }
+        if (batch.length() > 0) {
+            write(batch.toString());
+        }
+        return count > 0;
+    }
+
+    private void write(String text) {
+        try {
+            if (!open()) {
+                return;
+            }
+            writer.write(text);
+            writer.flush();
+            fileSize += text.getBytes(StandardCharsets.UTF_8).length;
+            if (fileSize > MAX_FILE_SIZE) {
+                rotate();
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            close();
+        }
+    }
+
+    /**
+     * Open the log file for appending if it isn't already open.
+     * <p/>
+     * @return true if the file's open, false if it isn't known yet.
+     */
+    private boolean open() throws IOException {
+        if (writer == null) {
+            file = fileSupplier.get();
+            if (file == null) {
+                return false;
+            }
+            fileSize = file.length();
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+        return true;
+    }
+
+    /**
+     * Move the current log aside to the backup file, replacing any previous
+     * backup. The next write starts a new log.
+     */
+    private void rotate() throws IOException {
+        close();
+        File backup = new File(file.getParentFile(), file.getName() + ".1");
+        Files.move(file.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            writer = null;
+        }
+    }
+}
@@ -18,18 +18,19 @@
 package org.quelea.services.utils;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -49,6 +50,42 @@ public final class LoggerUtils {
     public static final Level DEFAULT_LEVEL = Level.INFO;
     private static final Map<String, Logger> loggers;
     private static volatile File handlerFile;
+    private static final LogWriter LOG_WRITER = new LogWriter(() -> handlerFile);
+    /**
+     * Sends errors home one at a time. If lots of errors come at once, any
+     * more than can be queued up are just not sent.
+     */
+    private static final ExecutorService PHONE_HOME_EXECUTOR = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(20), r -> {
+        Thread thread = new Thread(r, "error-report");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+    /**
+     * The handler shared by all the loggers - this just queues each record
+     * to be written to the debug log in the background (and sent home if
+     * it's a warning or worse), so logging is cheap for the caller.
+     */
+    private static final Handler HANDLER = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            //Work out where the record came from now, it can't be done later on another thread
+            record.getSourceClassName();
+            LOG_WRITER.write(record);
+            if(record.getLevel().intValue() >= Level.WARNING.intValue()) {
+                PHONE_HOME_EXECUTOR.execute(() -> phoneHome(record));
+            }
+        }
+
+        @Override
+        public void flush() {
+            //Norhing needed here
+        }
+
+        @Override
+        public void close() throws SecurityException {
+            //Norhing needed here
+        }
+    };
 
     static {
         loggers = new HashMap<>();
@@ -97,61 +134,35 @@ public final class LoggerUtils {
         Logger logger = loggers.get(name);
         if(logger == null) {
             logger = Logger.getLogger(name);
-            logger.addHandler(new Handler() {
-                @Override
-                public void publish(LogRecord record) {
-                    synchronized(this) {
-                        writeToLog(new SimpleFormatter().format(record));
-                    }
-                    if(record.getLevel().intValue() >= Level.WARNING.intValue()) {
-                        StringBuilder sendText = new StringBuilder();
-                        sendText.append(record.getLevel().getName()).append("\n");
-                        sendText.append(new SimpleFormatter().format(record)).append("\n");
-                        if(record.getThrown() != null) {
-                            for(StackTraceElement e : record.getThrown().getStackTrace()) {
-                                sendText.append(e.toString()).append("\n");
-                            }
-                        }
-                        String errorText = null;
-                        try {
-                            errorText = URLEncoder.encode(sendText.toString(), "UTF-8");
-                        }
-                        catch(UnsupportedEncodingException ex) {
-                            //Nothing much here
-                        }
-                        final String fiErrorText = errorText;
-                        new Thread() {
-                            @Override
-                            public void run() {
-                                phoneHomeError(fiErrorText);
-                            }
-                        }.start();
-                    }
-                }
-
-                @Override
-                public void flush() {
-                    //Norhing needed here
-                }
-
-                @Override
-                public void close() throws SecurityException {
-                    //Norhing needed here
-                }
-            });
+            logger.addHandler(HANDLER);
             logger.setLevel(DEFAULT_LEVEL);
             loggers.put(name, logger);
         }
         return logger;
     }
 
-    private static void writeToLog(String message) {
-        try(PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(handlerFile, true)))) {
-            out.println(message);
+    /**
+     * Send the details of a warning or error to the error reporting server,
+     * unless the user has turned this off.
+     */
+    private static void phoneHome(LogRecord record) {
+        SimpleFormatter formatter = new SimpleFormatter();
+        StringBuilder sendText = new StringBuilder();
+        sendText.append(record.getLevel().getName()).append("\n");
+        sendText.append(formatter.format(record)).append("\n");
+        if(record.getThrown() != null) {
+            for(StackTraceElement e : record.getThrown().getStackTrace()) {
+                sendText.append(e.toString()).append("\n");
+            }
         }
-        catch(IOException ex) {
-            ex.printStackTrace();
+        String errorText = null;
+        try {
+            errorText = URLEncoder.encode(sendText.toString(), "UTF-8");
+        }
+        catch(UnsupportedEncodingException ex) {
+            //Nothing much here
         }
+        phoneHomeError(errorText);
     }
 
     private static void phoneHomeError(String error) {
@@ -957,6 +957,36 @@ public final class QueleaProperties extends Properties {
         return new File(getQueleaUserHome(), "temp");
     }
 
+    /**
+     * Get the directory used for storing the persistent search indexes.
+     * <p>
+     *
+     * @return the index directory
+     */
+    public File getIndexDir() {
+        return new File(getQueleaUserHome(), "index");
+    }
+
+    /**
+     * Get the directory used for storing the compiled bible cache.
+     * <p>
+     *
+     * @return the bible cache directory
+     */
+    public File getBibleCacheDir() {
+        return new File(getQueleaUserHome(), "biblecache");
+    }
+
+    /**
+     * Get the directory used for storing the compiled spelling dictionaries.
+     * <p>
+     *
+     * @return the dictionary cache directory
+     */
+    public File getDictionaryCacheDir() {
+        return new File(getQueleaUserHome(), "dictionarycache");
+    }
+
     /**
      * Get the extension used for quelea schedules.
      * <p>
@@ -2303,6 +2333,16 @@ public final class QueleaProperties extends Properties {
         return Integer.parseInt(getProperty(webRefreshRateKey, "500"));
     }
 
+    /**
+     * Get the maximum amount of memory used for caching decoded images.
+     * <p>
+     *
+     * @return the image cache size in megabytes.
+     */
+    public int getImageCacheSize() {
+        return Integer.parseInt(getProperty(imageCacheSizeKey, "256"));
+    }
+
     public String getWebProxyHost() {
         return getProperty(webProxyHostKey, null);
     }
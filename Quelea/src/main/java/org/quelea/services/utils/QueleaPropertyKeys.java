@@ -126,5 +126,6 @@ public class QueleaPropertyKeys {
     public static final String stageWCoordKey = "stage.width.coord";
     public static final String stageHCoordKey = "stage.height.coord";
     public static final String darkThemeKey = "use.dark.theme";
+    public static final String imageCacheSizeKey = "image.cache.size";
 
 }
@@ -0,0 +1,158 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A thread safe cache that holds entries up to a total size, evicting the
+ * least recently used entries when it's over. Unlike LRUCache, entries can
+ * be of very different sizes - a size in bytes is worked out for each one.
+ * The size is worked out once, when the entry is put in the cache, so the
+ * total stays right even if an entry's size would come out differently
+ * later on (an image that was still loading, for instance.)
+ * <p/>
+ * @param <K> the key type.
+ * @param <V> the value type.
+ * @author Michael
+ */
+public class SizedLRUCache<K, V> {
+
+    private final LinkedHashMap<K, Entry<V>> map;
+    private final ToLongFunction<V> sizer;
+    private final long maxSize;
+    private long size;
+    private long evictions;
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long size;
+
+        private Entry(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Create a new cache.
+     * <p/>
+     * @param maxSize the maximum total size of the entries.
+     * @param sizer works out the size of an entry.
+     */
+    public SizedLRUCache(long maxSize, ToLongFunction<V> sizer) {
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+        this.sizer = sizer;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get an entry from the cache, marking it as recently used.
+     * <p/>
+     * @param key the key of the entry.
+     * @return the entry, or null if it's not in the cache.
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Put an entry in the cache, evicting the least recently used entries if
+     * it's now too big. An entry bigger than the whole cache isn't kept.
+     * <p/>
+     * @param key the key of the entry.
+     * @param value the entry.
+     */
+    public synchronized void put(K key, V value) {
+        long valueSize = sizer.applyAsLong(value);
+        Entry<V> old = map.remove(key);
+        if (old != null) {
+            size -= old.size;
+        }
+        if (valueSize > maxSize) {
+            return;
+        }
+        map.put(key, new Entry<>(value, valueSize));
+        size += valueSize;
+        Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = it.next();
+            size -= eldest.getValue().size;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove all the entries whose keys match the given condition.
+     * <p/>
+     * @param condition the condition to match.
+     */
+    public synchronized void removeIf(Predicate<K> condition) {
+        Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = it.next();
+            if (condition.test(entry.getKey())) {
+                size -= entry.getValue().size;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public synchronized void clear() {
+        map.clear();
+        size = 0;
+    }
+
+    /**
+     * Get the total size of the entries in the cache.
+     * <p/>
+     * @return the size of the cache.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Get the number of entries in the cache.
+     * <p/>
+     * @return the number of entries.
+     */
+    public synchronized int count() {
+        return map.size();
+    }
+
+    /**
+     * Get the number of entries that have been evicted to make room for
+     * others since the cache was created.
+     * <p/>
+     * @return the number of evictions.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
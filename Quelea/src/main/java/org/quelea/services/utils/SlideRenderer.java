@@ -0,0 +1,448 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.services.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javax.imageio.ImageIO;
+
+/**
+ * Renders the slides of a document (a PDF or a presentation) when they're
+ * needed, rather than all up front.
+ * <p/>
+ * Thumbnails of every slide are rendered in the background as soon as the
+ * document is opened. Full size slides are rendered when they're shown,
+ * along with the next few slides, and kept in a cache of limited size that's
+ * shared between all documents. If drawing a slide is slow, each full size
+ * slide can also be saved as a PNG in a temporary directory once it's been
+ * rendered, and read back from there if it's dropped from the cache and
+ * needed again.
+ * <p/>
+ * The libraries that read these documents aren't thread safe, so each thread
+ * drawing a slide borrows its own copy of the document - there's never more
+ * than a given number of them.
+ * <p/>
+ * Disposing the renderer frees its documents and images, but it can still be
+ * used afterwards - the document may still be on the projector after it's
+ * been removed from the schedule. The document is just loaded again when
+ * it's next needed.
+ *
+ * @param <D> the type of the loaded document.
+ * @author Michael
+ */
+public final class SlideRenderer<D> {
+
+    /**
+     * Loads and draws the slides of a document.
+     *
+     * @param <D> the type of the loaded document.
+     */
+    public interface Source<D> {
+
+        /**
+         * Load a copy of the document from its file.
+         *
+         * @return the loaded document.
+         * @throws IOException if the document couldn't be loaded.
+         */
+        D load() throws IOException;
+
+        /**
+         * Get the number of slides in a loaded document.
+         *
+         * @param document the document.
+         * @return the number of slides.
+         */
+        int getSlideCount(D document);
+
+        /**
+         * Draw a slide, either as a thumbnail or full size.
+         *
+         * @param document the document, which no other thread is using.
+         * @param index the index of the slide.
+         * @param thumbnail true to draw a thumbnail, false to draw the full
+         * size slide.
+         * @return the drawn slide.
+         * @throws IOException if the slide couldn't be drawn.
+         */
+        BufferedImage render(D document, int index, boolean thumbnail) throws IOException;
+
+        /**
+         * Close a loaded copy of the document.
+         *
+         * @param document the document.
+         * @throws IOException if the document couldn't be closed.
+         */
+        void close(D document) throws IOException;
+    }
+
+    private static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final int PREFETCH_SLIDES = 3;
+    private static final long MAX_CACHE_SIZE = 256L * 1024 * 1024;
+    private static final int RENDER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService RENDER_EXECUTOR = Executors.newFixedThreadPool(RENDER_THREADS, r -> {
+        Thread thread = new Thread(r, "slide-render");
+        thread.setDaemon(true);
+        return thread;
+    });
+    //Thumbnails have their own threads so they never hold up a slide that's about to be shown
+    private static final ExecutorService THUMBNAIL_EXECUTOR = Executors.newFixedThreadPool(RENDER_THREADS, r -> {
+        Thread thread = new Thread(r, "slide-thumbnail");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private static final SizedLRUCache<String, Image> IMAGE_CACHE = new SizedLRUCache<>(MAX_CACHE_SIZE,
+            image -> (long) image.getWidth() * (long) image.getHeight() * 4);
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+    private final String file;
+    private final Source<D> source;
+    private final int maxCopies;
+    private final boolean saveRendered;
+    private final String cacheKeyPrefix;
+    private final BlockingQueue<D> documents;
+    private final AtomicInteger copies;
+    private final ConcurrentMap<Integer, CompletableFuture<Image>> pendingImages;
+    private final CompletableFuture<Image>[] thumbnails;
+    private File tileDir;
+    private volatile boolean disposed;
+
+    /**
+     * Open a document and start rendering its thumbnails.
+     *
+     * @param file the name of the document's file, for logging.
+     * @param source loads and draws the document.
+     * @param maxCopies the most copies of the document to load at once.
+     * @param saveRendered true if full size slides should be saved to disk
+     * so they don't have to be drawn again, false otherwise.
+     * @throws IOException if the document couldn't be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public SlideRenderer(String file, Source<D> source, int maxCopies, boolean saveRendered) throws IOException {
+        this.file = file;
+        this.source = source;
+        this.maxCopies = maxCopies;
+        this.saveRendered = saveRendered;
+        cacheKeyPrefix = ID_COUNTER.incrementAndGet() + ":";
+        documents = new LinkedBlockingQueue<>();
+        copies = new AtomicInteger();
+        pendingImages = new ConcurrentHashMap<>();
+        D document = loadDocument();
+        thumbnails = new CompletableFuture[source.getSlideCount(document)];
+        documents.add(document);
+        for (int i = 0; i < thumbnails.length; i++) {
+            thumbnails[i] = renderThumbnail(i);
+        }
+    }
+
+    /**
+     * Get the number of slides in the document.
+     *
+     * @return the number of slides.
+     */
+    public int getSlideCount() {
+        return thumbnails.length;
+    }
+
+    /**
+     * Get the thumbnail of a slide, as soon as it's been rendered.
+     *
+     * @param index the index of the slide.
+     * @return the thumbnail of the slide.
+     */
+    public CompletableFuture<Image> getThumbnail(int index) {
+        synchronized (thumbnails) {
+            if (thumbnails[index] == null) {
+                disposed = false;
+                thumbnails[index] = renderThumbnail(index);
+            }
+            return thumbnails[index];
+        }
+    }
+
+    private CompletableFuture<Image> renderThumbnail(final int index) {
+        final CompletableFuture<Image> future = new CompletableFuture<>();
+        THUMBNAIL_EXECUTOR.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(SwingFXUtils.toFXImage(render(index, true), null));
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't render thumbnail " + (index + 1) + " of " + file, ex);
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Get the full size image of a slide, rendering it if it isn't cached
+     * and isn't already being rendered. The next few slides are then rendered
+     * in the background. This waits for the slide to be rendered, so
+     * shouldn't be called on the FX thread - use getImageAsync() there.
+     *
+     * @param index the index of the slide.
+     * @return the full size image of the slide, or null if it couldn't be
+     * rendered.
+     */
+    public Image getImage(int index) {
+        try {
+            return getImageAsync(index).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the full size image of a slide as soon as it's been rendered. The
+     * next few slides are then rendered in the background.
+     *
+     * @param index the index of the slide.
+     * @return the full size image of the slide, which is null if it couldn't
+     * be rendered.
+     */
+    public CompletableFuture<Image> getImageAsync(int index) {
+        CompletableFuture<Image> future = requestImage(index);
+        prefetch(index + 1);
+        return future.handle((image, ex) -> {
+            if (ex != null) {
+                LOGGER.log(Level.WARNING, "Couldn't render slide " + (index + 1) + " of " + file, ex);
+            }
+            return image;
+        });
+    }
+
+    /**
+     * Start rendering the full size images of the slides from the given
+     * index onwards in the background, if they aren't cached already.
+     *
+     * @param index the index of the first slide to render.
+     */
+    public void prefetch(int index) {
+        for (int i = Math.max(0, index); i < Math.min(thumbnails.length, index + PREFETCH_SLIDES); i++) {
+            requestImage(i);
+        }
+    }
+
+    private CompletableFuture<Image> requestImage(final int index) {
+        disposed = false;
+        final String key = cacheKeyPrefix + index;
+        Image image = IMAGE_CACHE.get(key);
+        if (image != null) {
+            return CompletableFuture.completedFuture(image);
+        }
+        CompletableFuture<Image> future = pendingImages.get(index);
+        if (future != null) {
+            return future;
+        }
+        final CompletableFuture<Image> created = new CompletableFuture<>();
+        future = pendingImages.putIfAbsent(index, created);
+        if (future != null) {
+            return future;
+        }
+        RENDER_EXECUTOR.execute(() -> {
+            try {
+                File tile = saveRendered ? getTile(index) : null;
+                Image rendered = null;
+                if (tile != null && tile.exists()) {
+                    rendered = new Image(tile.toURI().toString());
+                    if (rendered.isError()) {
+                        rendered = null;
+                    }
+                }
+                BufferedImage bufferedImage = null;
+                if (rendered == null) {
+                    bufferedImage = render(index, false);
+                    rendered = SwingFXUtils.toFXImage(bufferedImage, null);
+                }
+                if (!disposed) {
+                    IMAGE_CACHE.put(key, rendered);
+                }
+                created.complete(rendered);
+                if (bufferedImage != null && tile != null) {
+                    saveTile(bufferedImage, tile);
+                }
+            } catch (RuntimeException ex) {
+                created.completeExceptionally(ex);
+            } finally {
+                pendingImages.remove(index, created);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Draw a slide with a copy of the document no other thread is using.
+     */
+    private BufferedImage render(int index, boolean thumbnail) {
+        D document = null;
+        try {
+            document = borrowDocument();
+            return source.render(document, index, thumbnail);
+        } catch (IOException | InterruptedException ex) {
+            throw new IllegalStateException("Couldn't render slide " + (index + 1) + " of " + file, ex);
+        } finally {
+            if (document != null) {
+                returnDocument(document);
+            }
+        }
+    }
+
+    /**
+     * Get the file the full size image of a slide is saved in, creating the
+     * directory for them if need be.
+     *
+     * @return the file, or null if there's nowhere to save it.
+     */
+    private synchronized File getTile(int index) {
+        if (tileDir == null) {
+            try {
+                tileDir = Files.createTempDirectory("queleaslides").toFile();
+                tileDir.deleteOnExit();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't create directory for rendered slides", ex);
+                return null;
+            }
+        }
+        return new File(tileDir, index + ".png");
+    }
+
+    private void saveTile(BufferedImage image, File tile) {
+        if (disposed) {
+            return;
+        }
+        File temp = new File(tile.getParentFile(), tile.getName() + ".tmp");
+        try {
+            boolean written;
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                written = ImageIO.write(image, "png", out);
+            }
+            if (written && !disposed) {
+                Files.move(temp.toPath(), tile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                //Registered after the directory, so deleted before it
+                tile.deleteOnExit();
+            }
+        } catch (IOException ex) {
+            if (tile.getParentFile().exists()) {
+                LOGGER.log(Level.WARNING, "Couldn't save rendered slide " + tile, ex);
+            } else {
+                LOGGER.log(Level.FINE, "Rendered slides removed while saving " + tile, ex);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Get a loaded copy of the document that isn't being used by any other
+     * thread, loading another copy if there aren't too many already.
+     */
+    private D borrowDocument() throws IOException, InterruptedException {
+        D document = documents.poll();
+        if (document != null) {
+            return document;
+        }
+        if (copies.get() < maxCopies) {
+            return loadDocument();
+        }
+        return documents.take();
+    }
+
+    private void returnDocument(D document) {
+        if (disposed) {
+            closeDocument(document);
+        } else {
+            documents.add(document);
+        }
+    }
+
+    private D loadDocument() throws IOException {
+        copies.incrementAndGet();
+        try {
+            return source.load();
+        } catch (IOException | RuntimeException ex) {
+            copies.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private void closeDocument(D document) {
+        copies.decrementAndGet();
+        try {
+            source.close(document);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Couldn't close " + file, ex);
+        }
+    }
+
+    /**
+     * Free up the loaded documents, thumbnails, cached slides and saved
+     * slides of this renderer. They're loaded again if it's used after this.
+     */
+    public void dispose() {
+        disposed = true;
+        synchronized (thumbnails) {
+            for (int i = 0; i < thumbnails.length; i++) {
+                if (thumbnails[i] != null) {
+                    thumbnails[i].cancel(false);
+                    thumbnails[i] = null;
+                }
+            }
+        }
+        D document;
+        while ((document = documents.poll()) != null) {
+            closeDocument(document);
+        }
+        IMAGE_CACHE.removeIf(key -> key.startsWith(cacheKeyPrefix));
+        synchronized (this) {
+            if (tileDir != null) {
+                File[] tiles = tileDir.listFiles();
+                if (tiles != null) {
+                    for (File tile : tiles) {
+                        tile.delete();
+                    }
+                }
+                tileDir.delete();
+                tileDir = null;
+            }
+        }
+    }
+}
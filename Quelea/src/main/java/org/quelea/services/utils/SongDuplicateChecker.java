@@ -17,7 +17,7 @@
  */
 package org.quelea.services.utils;
 
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import java.util.stream.IntStream;
 import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.SongDisplayable;
 
@@ -29,52 +29,40 @@ import org.quelea.data.displayable.SongDisplayable;
  */
 public class SongDuplicateChecker {
 
-    public static void main(String[] args) {
-        new SongDuplicateChecker().checkSongs(null);
-    }
-
+    /**
+     * Checks whether each of the given new songs is the same or similar to a
+     * song already existing in the database. The songs are checked in
+     * parallel.
+     *
+     * @param newSongs the new songs to check.
+     * @return an array the same length as newSongs, with true for each song
+     * that's the same or similar to an existing song.
+     */
     public boolean[] checkSongs(SongDisplayable[] newSongs) {
-        final SongDisplayable[] songs = SongManager.get().getSongs();
-        final String[] songLyrics = new String[songs.length];
-        for (int i = 0; i < songLyrics.length; i++) {
-            songLyrics[i] = songs[i].getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-        }
+        //Fingerprint the library up front, rather than in whichever check gets there first
+        SongManager.get().getFingerprintIndex();
         boolean[] sameArr = new boolean[newSongs.length];
-        for(int i=0 ; i<newSongs.length ; i++) {
-            //System.out.println(i + " of " + newSongs.length);
-            SongDisplayable newSong = newSongs[i];
-            String newLyrics = newSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            int distance = new AparapiLevenshteinDistance().leastCompare(newLyrics, songLyrics);
-            if(distance<30) {
-                sameArr[i] = true;
-            }
-            else {
-                sameArr[i] = false;
-            }
-        }
+        IntStream.range(0, newSongs.length).parallel().forEach(i -> sameArr[i] = checkSong(newSongs[i]));
         return sameArr;
     }
 
     /**
      * Checks whether the given new song is the same or similar to a song
-     * already existing in the database.
+     * already existing in the database. Only the songs whose fingerprints
+     * suggest they might be similar are compared properly, and the comparison
+     * gives up as soon as the songs are known to be too different.
      *
      * @param newSong the new song to check.
      * @return true if the song is the same or similar to an existing song,
      * false otherwise.
      */
     public boolean checkSong(SongDisplayable newSong) {
-        for(SongDisplayable databaseSong : SongManager.get().getSongs()) {
-            String databaseLyrics = databaseSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            String newLyrics = newSong.getLyrics(false, false).replaceAll("[^\\p{L}]", "");
-            int maxDistance;
-            if(newLyrics.length() < databaseLyrics.length()) {
-                maxDistance = newLyrics.length() / 10;
-            }
-            else {
-                maxDistance = databaseLyrics.length() / 10;
-            }
-            if(new LevenshteinDistance().apply(databaseLyrics, newLyrics) <= maxDistance) {
+        String newLyrics = SongFingerprintIndex.normalise(newSong);
+        BoundedEditDistance distance = new BoundedEditDistance(newLyrics);
+        for(SongDisplayable databaseSong : SongManager.get().getFingerprintIndex().getCandidates(newLyrics)) {
+            String databaseLyrics = SongFingerprintIndex.normalise(databaseSong);
+            int maxDistance = Math.min(newLyrics.length(), databaseLyrics.length()) / 10;
+            if(distance.distance(databaseLyrics, maxDistance) != -1) {
                 return true;
             }
         }
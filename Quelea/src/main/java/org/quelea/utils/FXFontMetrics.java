@@ -1,21 +1,41 @@
 package org.quelea.utils;
 
+import java.util.Collections;
+import java.util.Map;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import org.quelea.services.utils.LRUCache;
 
 /**
  * A replacement for the deprecated / removed Fontmetrics class in JavaFX.
+ * <p/>
+ * Most strings are measured by summing character advances from a shared
+ * GlyphAdvanceTable, so no layout pass is needed. Strings that need shaping
+ * are laid out in full, and those measurements are cached across instances
+ * keyed by the font name, style, size and string. Text nodes used here are
+ * never attached to a scene, so metrics can be used from any thread.
  * @author Michael
  */
 public class FXFontMetrics {
 
-    private final Text uiText;
+    private static final Map<String, Double> WIDTH_CACHE = Collections.synchronizedMap(new LRUCache<>(50000));
+    private static final Map<String, Double> LINE_HEIGHT_CACHE = Collections.synchronizedMap(new LRUCache<>(1000));
+    private final Font font;
+    private final String fontKey;
     private final double lineHeight;
+    private final GlyphAdvanceTable advances;
+    private Text uiText;
 
     public FXFontMetrics(Font fnt) {
-        uiText = new Text();
-        uiText.setFont(fnt);
-        lineHeight = uiText.getLayoutBounds().getHeight();
+        font = fnt;
+        fontKey = fnt.getName() + '\u0000' + fnt.getStyle() + '\u0000' + fnt.getSize() + '\u0000';
+        advances = GlyphAdvanceTable.get(fnt);
+        Double cachedHeight = LINE_HEIGHT_CACHE.get(fontKey);
+        if (cachedHeight == null) {
+            cachedHeight = getText().getLayoutBounds().getHeight();
+            LINE_HEIGHT_CACHE.put(fontKey, cachedHeight);
+        }
+        lineHeight = cachedHeight;
     }
 
     public double getLineHeight() {
@@ -23,8 +43,40 @@ public class FXFontMetrics {
     }
 
     public double computeStringWidth(String txt) {
-        uiText.setText(txt);
-        return uiText.getLayoutBounds().getWidth();
+        if (txt == null) {
+            return 0;
+        }
+        if (GlyphAdvanceTable.isSimple(txt)) {
+            return advances.computeStringWidth(txt);
+        }
+        String key = fontKey + txt;
+        Double width = WIDTH_CACHE.get(key);
+        if (width == null) {
+            Text text = getText();
+            text.setText(txt);
+            width = text.getLayoutBounds().getWidth();
+            WIDTH_CACHE.put(key, width);
+        }
+        return width;
+    }
+
+    /**
+     * Determine whether the width of the given text is the sum of the widths
+     * of its parts, so it can be measured incrementally (when wrapping a line
+     * word by word, for instance.)
+     * @param txt the text to check.
+     * @return true if the text can be measured incrementally, false otherwise.
+     */
+    public boolean isAdditive(String txt) {
+        return GlyphAdvanceTable.isSimple(txt);
+    }
+
+    private Text getText() {
+        if (uiText == null) {
+            uiText = new Text();
+            uiText.setFont(font);
+        }
+        return uiText;
     }
 
 }
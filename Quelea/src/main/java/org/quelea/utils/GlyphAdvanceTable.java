@@ -0,0 +1,157 @@
+package org.quelea.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import org.quelea.services.utils.LRUCache;
+
+/**
+ * A table of the advance widths of individual characters in a single font.
+ * Once a character has been measured, strings made up of "simple" characters
+ * can be measured by summing their advances, without laying out a Text node.
+ * Strings that need shaping (combining marks, complex scripts and so on)
+ * can't be measured this way and should be measured as a whole.
+ * <p/>
+ * Tables are shared between all callers and are safe to use from any thread.
+ * @author Michael
+ */
+public class GlyphAdvanceTable {
+
+    private static final Map<String, GlyphAdvanceTable> TABLES = Collections.synchronizedMap(new LRUCache<>(200));
+    private static final int DIRECT_CHARS = 0x300;
+    private static final String MEASURE_BOUND = "x";
+    private final double[] directAdvances;
+    private final Map<Character, Double> otherAdvances;
+    private final Text text;
+    private final double boundWidth;
+
+    private GlyphAdvanceTable(Font font) {
+        directAdvances = new double[DIRECT_CHARS];
+        Arrays.fill(directAdvances, Double.NaN);
+        otherAdvances = new HashMap<>();
+        text = new Text();
+        text.setFont(font);
+        boundWidth = measure(MEASURE_BOUND + MEASURE_BOUND);
+    }
+
+    /**
+     * Get the advance table for the given font.
+     * <p/>
+     * @param font the font.
+     * @return the advance table for the font.
+     */
+    public static GlyphAdvanceTable get(Font font) {
+        String key = font.getName() + '\u0000' + font.getStyle() + '\u0000' + font.getSize();
+        synchronized (TABLES) {
+            GlyphAdvanceTable table = TABLES.get(key);
+            if (table == null) {
+                table = new GlyphAdvanceTable(font);
+                TABLES.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    /**
+     * Determine whether the width of the given string is just the sum of the
+     * advances of its characters. This is the case for most Latin, Greek,
+     * Cyrillic and CJK text, but not for anything that needs combining marks
+     * or shaping.
+     * <p/>
+     * @param str the string to check.
+     * @return true if the string can be measured with an advance table, false
+     * otherwise.
+     */
+    public static boolean isSimple(String str) {
+        for (int i = 0; i < str.length(); i++) {
+            if (!isSimple(str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSimple(char c) {
+        if (c < DIRECT_CHARS) {
+            return true;
+        }
+        if (Character.isSurrogate(c)) {
+            return false;
+        }
+        switch (Character.getType(c)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.FORMAT:
+                return false;
+            default:
+                break;
+        }
+        switch (Character.UnicodeScript.of(c)) {
+            case LATIN:
+            case GREEK:
+            case CYRILLIC:
+            case COMMON:
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compute the width of a string made up of simple characters.
+     * <p/>
+     * @param str the string to measure.
+     * @return the width of the string.
+     * @see #isSimple(java.lang.String)
+     */
+    public double computeStringWidth(String str) {
+        double width = 0;
+        for (int i = 0; i < str.length(); i++) {
+            width += getAdvance(str.charAt(i));
+        }
+        return width;
+    }
+
+    /**
+     * Get the advance width of a single character.
+     * <p/>
+     * @param c the character.
+     * @return the advance width of the character.
+     */
+    public synchronized double getAdvance(char c) {
+        if (c < DIRECT_CHARS) {
+            double advance = directAdvances[c];
+            if (Double.isNaN(advance)) {
+                advance = measureAdvance(c);
+                directAdvances[c] = advance;
+            }
+            return advance;
+        }
+        Double advance = otherAdvances.get(c);
+        if (advance == null) {
+            advance = measureAdvance(c);
+            otherAdvances.put(c, advance);
+        }
+        return advance;
+    }
+
+    /**
+     * Measure the advance of a character by placing it between two bounding
+     * characters, so leading or trailing whitespace isn't lost.
+     */
+    private double measureAdvance(char c) {
+        return measure(MEASURE_BOUND + c + MEASURE_BOUND) - boundWidth;
+    }
+
+    private double measure(String str) {
+        text.setText(str);
+        return text.getLayoutBounds().getWidth();
+    }
+}
@@ -190,6 +190,7 @@ public class LibrarySongList extends StackPane {
     }
     private ExecutorService filterService = Executors.newSingleThreadExecutor();
     private Future<?> filterFuture;
+    private volatile String lastSearch;
 
     /**
      * Filter the results in this list by a specific search term.
@@ -197,6 +198,7 @@ public class LibrarySongList extends StackPane {
      * @param search the search term to use.
      */
     public void filter(final String search) {
+        lastSearch = search;
         if (filterFuture != null) {
             filterFuture.cancel(true);
         }
@@ -296,14 +298,37 @@ public class LibrarySongList extends StackPane {
     }
 
     private void refresh() {
-        Platform.runLater(() -> {
-            setLoading(true);
-        });
-        final ObservableList<SongDisplayable> songs = FXCollections.observableArrayList(SongManager.get().getSongs(loadingOverlay));
+        final SongDisplayable[] snapshotSongs = SongManager.get().getSnapshotSongs();
+        if (snapshotSongs == null) {
+            Platform.runLater(() -> {
+                setLoading(true);
+            });
+        } else {
+            final ObservableList<SongDisplayable> songs = FXCollections.observableArrayList(snapshotSongs);
+            Platform.runLater(() -> {
+                songList.itemsProperty().set(songs);
+                setLoading(false);
+            });
+        }
+        final ObservableList<SongDisplayable> songs = FXCollections.observableArrayList(SongManager.get().getSongs(snapshotSongs == null ? loadingOverlay : null));
         Platform.runLater(new Runnable() {
             @Override
             public void run() {
+                if (snapshotSongs != null && lastSearch != null && !lastSearch.trim().isEmpty()) {
+                    //Rerun the search against the songs from the database
+                    filter(lastSearch);
+                    return;
+                }
+                SongDisplayable selected = songList.getSelectionModel().getSelectedItem();
                 songList.itemsProperty().set(songs);
+                if (snapshotSongs != null && selected != null) {
+                    for (SongDisplayable song : songs) {
+                        if (song.getID() == selected.getID()) {
+                            songList.getSelectionModel().select(song);
+                            break;
+                        }
+                    }
+                }
                 setLoading(false);
             }
         });
@@ -20,9 +20,13 @@ package org.quelea.windows.lyrics;
 import java.awt.Dimension;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import javafx.animation.FadeTransition;
 import javafx.animation.ParallelTransition;
@@ -41,6 +45,7 @@ import javafx.scene.text.FontPosture;
 import javafx.scene.text.FontWeight;
 import javafx.util.Duration;
 import org.quelea.data.ColourBackground;
+import org.quelea.data.GlobalThemeStore;
 import org.quelea.data.ImageBackground;
 import org.quelea.data.ThemeDTO;
 import org.quelea.data.VideoBackground;
@@ -49,6 +54,7 @@ import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.data.displayable.TextDisplayable;
 import org.quelea.data.displayable.TextSection;
+import org.quelea.services.utils.LRUCache;
 import org.quelea.services.utils.LineTypeChecker;
 import org.quelea.services.utils.LineTypeChecker.Type;
 import org.quelea.services.utils.LyricLine;
@@ -75,6 +81,15 @@ public class LyricDrawer extends WordDrawer {
     private TextDisplayable curDisplayable;
     private boolean capitaliseFirst;
     private String[] smallText;
+    private double layoutWidth;
+    private double layoutHeight;
+    private static final Map<String, SlideLayout> LAYOUT_CACHE = Collections.synchronizedMap(new LRUCache<>(2000));
+    private static final ExecutorService LAYOUT_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "slide-layout");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
 
     public LyricDrawer() {
         text = new String[]{};
@@ -86,9 +101,6 @@ public class LyricDrawer extends WordDrawer {
 
     protected void drawText(double defaultFontSize, boolean dumbWrap) {
         Utils.checkFXThread();
-        if (defaultFontSize < 1) {
-            defaultFontSize = QueleaProperties.get().getMaxFontSize();
-        }
         if (getCanvas().getCanvasBackground() != null) {
             if (!getCanvas().getChildren().contains(getCanvas().getCanvasBackground())
                     && !getCanvas().getChildren().contains(textGroup) && !getCanvas().getChildren().contains(smallTextGroup)) {
@@ -97,22 +109,9 @@ public class LyricDrawer extends WordDrawer {
                 getCanvas().getChildren().add(smallTextGroup);
             }
         }
-        Font font = Font.font(theme.getFont().getFamily(),
-                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                defaultFontSize);
-        String translateFamily = theme.getFont().getFamily();
-        if (theme.getTranslateFont() != null) {
-            translateFamily = theme.getTranslateFont().getFamily();
-        }
-        Font translateFont = Font.font(translateFamily,
-                theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                defaultFontSize);
+        setLayoutSize(getCanvas().getWidth(), getCanvas().getHeight());
+        SlideLayout layout = getLayout(defaultFontSize, dumbWrap);
 
-        if (font == null) {
-            font = ThemeDTO.DEFAULT_FONT.getFont();
-        }
         DropShadow shadow = new DropShadow();
         if (theme.getShadow() != null) {
             shadow = theme.getShadow().getDropShadow();
@@ -120,51 +119,10 @@ public class LyricDrawer extends WordDrawer {
         if (shadow == null) {
             shadow = ThemeDTO.DEFAULT_SHADOW.getDropShadow();
         }
-
-        List<LyricLine> newText;
-        double fontSize = -1;
-        if (dumbWrap) {
-            if (text.length == 0) {
-                fontSize = 1;
-                newText = new ArrayList<>();
-            } else {
-                WrapTextResult result = normalWrapText(font, text[0], getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds(), getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
-                newText = result.getNewText();
-                fontSize = result.getFontSize();
-            }
-        } else {
-            newText = sanctifyText(text, translations);
-        }
-        if (fontSize == -1) {
-            fontSize = pickFontSize(font, newText, getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds(), getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
-        }
-        font = Font.font(font.getFamily(),
-                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                fontSize);
-        translateFont = Font.font(translateFont.getFamily(),
-                theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
-                theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
-                fontSize - QueleaProperties.get().getTranslationFontSizeOffset());
-        double smallFontSize;
-        Font smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, 500);
-
-        if (curDisplayable instanceof BiblePassage) {
-            smallFontSize = pickSmallFontSize(smallTextFont, smallText, getCanvas().getWidth() * 0.8,
-                    (getCanvas().getHeight() * (QueleaProperties.get().getSmallBibleTextSize())) - 5); //-5 for insets
-        } else {
-            smallFontSize = pickSmallFontSize(smallTextFont, smallText, getCanvas().getWidth() * 0.8,
-                    (getCanvas().getHeight() * (QueleaProperties.get().getSmallSongTextSize())) - 5); //-5 for insets
-        }
-        smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, smallFontSize);
-
-        FXFontMetrics metrics = new FXFontMetrics(font);
-        FXFontMetrics translateMetrics = new FXFontMetrics(translateFont);
-        FXFontMetrics smallTextMetrics = new FXFontMetrics(smallTextFont);
         final Group newTextGroup = new Group();
-        shadow.setOffsetX(metrics.getLineHeight() * shadow.getOffsetX() * 0.003);
-        shadow.setOffsetY(metrics.getLineHeight() * shadow.getOffsetY() * 0.003);
-        shadow.setRadius(shadow.getRadius() * metrics.getLineHeight() * 0.0015);
+        shadow.setOffsetX(layout.getLineHeight() * shadow.getOffsetX() * 0.003);
+        shadow.setOffsetY(layout.getLineHeight() * shadow.getOffsetY() * 0.003);
+        shadow.setRadius(shadow.getRadius() * layout.getLineHeight() * 0.0015);
         newTextGroup.setEffect(shadow);
         StackPane.setAlignment(newTextGroup, Pos.CENTER);
         smallTextGroup = new Group();
@@ -172,9 +130,9 @@ public class LyricDrawer extends WordDrawer {
         if (smallshadow == null) {
             smallshadow = new DropShadow();
         }
-        smallshadow.setOffsetX(smallTextMetrics.getLineHeight() * shadow.getOffsetX() * 0.03);
-        smallshadow.setOffsetY(smallTextMetrics.getLineHeight() * shadow.getOffsetY() * 0.03);
-        smallshadow.setRadius(shadow.getRadius() * smallTextMetrics.getLineHeight() * 0.015);
+        smallshadow.setOffsetX(layout.getSmallLineHeight() * shadow.getOffsetX() * 0.03);
+        smallshadow.setOffsetY(layout.getSmallLineHeight() * shadow.getOffsetY() * 0.03);
+        smallshadow.setRadius(shadow.getRadius() * layout.getSmallLineHeight() * 0.015);
         smallTextGroup.setEffect(smallshadow);
 
         if (curDisplayable instanceof BiblePassage) {
@@ -222,26 +180,21 @@ public class LyricDrawer extends WordDrawer {
         }
         getCanvas().pushLogoNoticeToFront();
 
-        int y = 0;
         ParallelTransition paintTransition = new ParallelTransition();
-        for (LyricLine line : newText) {
-            FXFontMetrics loopMetrics;
-            if (line.isTranslateLine()) {
-                loopMetrics = translateMetrics;
-            } else {
-                loopMetrics = metrics;
-            }
+        List<LyricLine> lines = layout.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            LyricLine line = lines.get(i);
             FormattedText t;
             t = new FormattedText(line.getLine());
 
             if (line.isTranslateLine()) {
-                t.setFont(translateFont);
+                t.setFont(layout.getTranslateFont());
             } else {
-                t.setFont(font);
+                t.setFont(layout.getFont());
             }
 
-            setPositionX(t, loopMetrics, line.getLine(), curDisplayable instanceof BiblePassage);
-            t.setLayoutY(y);
+            t.setLayoutX(layout.getLineX(i));
+            t.setLayoutY(layout.getLineY(i));
 
             Color lineColor;
             if (line.isTranslateLine()) {
@@ -254,38 +207,17 @@ public class LyricDrawer extends WordDrawer {
                 lineColor = ThemeDTO.DEFAULT_FONT_COLOR;
             }
             t.setFill(lineColor);
-            y += loopMetrics.getLineHeight() + getLineSpacing();
 
             newTextGroup.getChildren().add(t);
         }
 
-        int sy = 0;
-        for (String stext : smallText) {
-            stext = stext.trim();
-            FormattedText ft = new FormattedText(stext);
-            ft.setFont(smallTextFont);
+        for (int i = 0; i < layout.getSmallLineCount(); i++) {
+            FormattedText ft = new FormattedText(layout.getSmallLine(i));
+            ft.setFont(layout.getSmallFont());
             ft.setFill(theme.getFontPaint());
-            if (curDisplayable instanceof BiblePassage) {
-                if (QueleaProperties.get().getSmallBibleTextPositionH().equalsIgnoreCase("right")) {
-                    ft.setLayoutX(getCanvas().getWidth() - smallTextMetrics.computeStringWidth(stext));
-                }
-                if (QueleaProperties.get().getSmallBibleTextPositionV().equalsIgnoreCase("top")) {
-                    ft.setLayoutY(getCanvas().getHeight() - sy);
-                } else {
-                    ft.setLayoutY(sy);
-                }
-            } else {
-                if (QueleaProperties.get().getSmallSongTextPositionH().equalsIgnoreCase("right")) {
-                    ft.setLayoutX(getCanvas().getWidth() - smallTextMetrics.computeStringWidth(stext));
-                }
-                if (QueleaProperties.get().getSmallSongTextPositionV().equalsIgnoreCase("top")) {
-                    ft.setLayoutY(getCanvas().getHeight() - sy);
-                } else {
-                    ft.setLayoutY(sy);
-                }
-            }
+            ft.setLayoutX(layout.getSmallX(i));
+            ft.setLayoutY(layout.getSmallY(i));
             smallTextGroup.getChildren().add(ft);
-            sy += smallTextMetrics.getLineHeight() + 2;
         }
         if (!paintTransition.getChildren().isEmpty()) {
             paintTransition.play();
@@ -320,20 +252,247 @@ public class LyricDrawer extends WordDrawer {
         }
     }
 
-    private void setPositionX(FormattedText t, FXFontMetrics metrics, String line, boolean biblePassage) {
-        Utils.checkFXThread();
+    /**
+     * Set the size of the canvas the text is being laid out for.
+     * <p/>
+     * @param width the width of the canvas.
+     * @param height the height of the canvas.
+     */
+    private void setLayoutSize(double width, double height) {
+        this.layoutWidth = width;
+        this.layoutHeight = height;
+    }
+
+    @Override
+    protected double getLineSpacing() {
+        return getLineSpacing(layoutHeight);
+    }
+
+    /**
+     * Get the layout of the current text, from the layout cache if it's
+     * already been worked out for this text, theme and canvas size.
+     * <p/>
+     * @param defaultFontSize the font size to use, or -1 to pick one.
+     * @param dumbWrap true if the text should be wrapped to fit.
+     * @return the layout of the current text.
+     */
+    private SlideLayout getLayout(double defaultFontSize, boolean dumbWrap) {
+        if (defaultFontSize < 1) {
+            defaultFontSize = QueleaProperties.get().getMaxFontSize();
+        }
+        String key = getLayoutKey(defaultFontSize, dumbWrap);
+        SlideLayout layout = LAYOUT_CACHE.get(key);
+        if (layout == null) {
+            layout = computeLayout(defaultFontSize, dumbWrap);
+            LAYOUT_CACHE.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Get the key of the current text in the layout cache. This covers
+     * everything the layout depends on, so a layout is never reused after a
+     * theme, canvas size or setting has changed.
+     */
+    private String getLayoutKey(double defaultFontSize, boolean dumbWrap) {
+        QueleaProperties props = QueleaProperties.get();
+        StringBuilder key = new StringBuilder();
+        for (String[] arr : new String[][]{text, translations, smallText}) {
+            key.append(arr.length).append('\u0000');
+            for (String str : arr) {
+                key.append(str).append('\u0000');
+            }
+        }
+        String translateFamily = theme.getTranslateFont() == null ? null : theme.getTranslateFont().getFamily();
+        key.append(theme.getFont().getFamily()).append('\u0000')
+                .append(theme.isBold()).append(theme.isItalic())
+                .append(translateFamily).append('\u0000')
+                .append(theme.isTranslateBold()).append(theme.isTranslateItalic())
+                .append(theme.getTextAlignment()).append(',')
+                .append(defaultFontSize).append(',')
+                .append(dumbWrap).append(curDisplayable instanceof BiblePassage)
+                .append(capitaliseFirst && props.checkCapitalFirst()).append(',')
+                .append(layoutWidth).append('x').append(layoutHeight).append(',')
+                .append(props.getLyricWidthBounds()).append(',')
+                .append(props.getLyricHeightBounds()).append(',')
+                .append(props.getMaxChars()).append(',')
+                .append(props.getAdditionalLineSpacing()).append(',')
+                .append(props.getTranslationFontSizeOffset()).append(',')
+                .append(props.getSmallBibleTextSize()).append(',')
+                .append(props.getSmallSongTextSize()).append(',')
+                .append(props.getSmallBibleTextPositionH()).append(props.getSmallBibleTextPositionV())
+                .append(props.getSmallSongTextPositionH()).append(props.getSmallSongTextPositionV());
+        return key.toString();
+    }
+
+    /**
+     * Work out the layout of the current text. This doesn't touch the canvas,
+     * so it's safe to call off the platform thread as long as the text and
+     * layout size have been set.
+     */
+    private SlideLayout computeLayout(double defaultFontSize, boolean dumbWrap) {
+        Font font = Font.font(theme.getFont().getFamily(),
+                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                defaultFontSize);
+        String translateFamily = theme.getFont().getFamily();
+        if (theme.getTranslateFont() != null) {
+            translateFamily = theme.getTranslateFont().getFamily();
+        }
+        Font translateFont = Font.font(translateFamily,
+                theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                defaultFontSize);
+
+        if (font == null) {
+            font = ThemeDTO.DEFAULT_FONT.getFont();
+        }
+
+        List<LyricLine> newText;
+        double fontSize = -1;
+        if (dumbWrap) {
+            if (text.length == 0) {
+                fontSize = 1;
+                newText = new ArrayList<>();
+            } else {
+                WrapTextResult result = normalWrapText(font, text[0], layoutWidth * QueleaProperties.get().getLyricWidthBounds(), layoutHeight * QueleaProperties.get().getLyricHeightBounds());
+                newText = result.getNewText();
+                fontSize = result.getFontSize();
+            }
+        } else {
+            newText = sanctifyText(text, translations);
+        }
+        if (fontSize == -1) {
+            fontSize = pickFontSize(font, newText, layoutWidth * QueleaProperties.get().getLyricWidthBounds(), layoutHeight * QueleaProperties.get().getLyricHeightBounds());
+        }
+        font = Font.font(font.getFamily(),
+                theme.isBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                theme.isItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                fontSize);
+        translateFont = Font.font(translateFont.getFamily(),
+                theme.isTranslateBold() ? FontWeight.BOLD : FontWeight.NORMAL,
+                theme.isTranslateItalic() ? FontPosture.ITALIC : FontPosture.REGULAR,
+                fontSize - QueleaProperties.get().getTranslationFontSizeOffset());
+        double smallFontSize;
+        Font smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, 500);
+
+        if (curDisplayable instanceof BiblePassage) {
+            smallFontSize = pickSmallFontSize(smallTextFont, smallText, layoutWidth * 0.8,
+                    (layoutHeight * (QueleaProperties.get().getSmallBibleTextSize())) - 5); //-5 for insets
+        } else {
+            smallFontSize = pickSmallFontSize(smallTextFont, smallText, layoutWidth * 0.8,
+                    (layoutHeight * (QueleaProperties.get().getSmallSongTextSize())) - 5); //-5 for insets
+        }
+        smallTextFont = Font.font("Arial", FontWeight.BOLD, FontPosture.REGULAR, smallFontSize);
+
+        FXFontMetrics metrics = new FXFontMetrics(font);
+        FXFontMetrics translateMetrics = new FXFontMetrics(translateFont);
+        FXFontMetrics smallTextMetrics = new FXFontMetrics(smallTextFont);
+
+        double[] lineX = new double[newText.size()];
+        double[] lineY = new double[newText.size()];
+        int y = 0;
+        for (int i = 0; i < newText.size(); i++) {
+            LyricLine line = newText.get(i);
+            FXFontMetrics loopMetrics;
+            if (line.isTranslateLine()) {
+                loopMetrics = translateMetrics;
+            } else {
+                loopMetrics = metrics;
+            }
+            lineX[i] = getPositionX(loopMetrics, line.getLine());
+            lineY[i] = y;
+            y += loopMetrics.getLineHeight() + getLineSpacing();
+        }
+
+        String[] smallLines = new String[smallText.length];
+        double[] smallX = new double[smallText.length];
+        double[] smallY = new double[smallText.length];
+        String smallPositionH;
+        String smallPositionV;
+        if (curDisplayable instanceof BiblePassage) {
+            smallPositionH = QueleaProperties.get().getSmallBibleTextPositionH();
+            smallPositionV = QueleaProperties.get().getSmallBibleTextPositionV();
+        } else {
+            smallPositionH = QueleaProperties.get().getSmallSongTextPositionH();
+            smallPositionV = QueleaProperties.get().getSmallSongTextPositionV();
+        }
+        int sy = 0;
+        for (int i = 0; i < smallText.length; i++) {
+            String stext = smallText[i].trim();
+            smallLines[i] = stext;
+            if (smallPositionH.equalsIgnoreCase("right")) {
+                smallX[i] = layoutWidth - smallTextMetrics.computeStringWidth(stext);
+            }
+            if (smallPositionV.equalsIgnoreCase("top")) {
+                smallY[i] = layoutHeight - sy;
+            } else {
+                smallY[i] = sy;
+            }
+            sy += smallTextMetrics.getLineHeight() + 2;
+        }
+        return new SlideLayout(newText, lineX, lineY, smallLines, smallX, smallY,
+                font, translateFont, smallTextFont, metrics.getLineHeight(), smallTextMetrics.getLineHeight());
+    }
+
+    private double getPositionX(FXFontMetrics metrics, String line) {
         String strippedLine = line.replaceAll("\\<\\/?sup\\>", "");
         double width = metrics.computeStringWidth(strippedLine);
         double leftOffset = 0;
-        double centreOffset = (getCanvas().getWidth() - width) / 2;
-        double rightOffset = (getCanvas().getWidth() - width);
+        double centreOffset = (layoutWidth - width) / 2;
+        double rightOffset = (layoutWidth - width);
         if (theme.getTextAlignment() == -1) {
-            t.setLayoutX(leftOffset);
+            return leftOffset;
         } else if (theme.getTextAlignment() == 0) {
-            t.setLayoutX(centreOffset);
+            return centreOffset;
         } else if (theme.getTextAlignment() == 1) {
-            t.setLayoutX(rightOffset);
+            return rightOffset;
         }
+        return 0;
+    }
+
+    /**
+     * Work out the layout of every section of a text displayable in the
+     * background, so the slides can be drawn straight from the layout cache
+     * when they're shown on a canvas of the given size.
+     * <p/>
+     * @param displayable the displayable to lay out.
+     * @param themeStore the theme store used to pick the theme of each
+     * section.
+     * @param width the width of the canvas.
+     * @param height the height of the canvas.
+     */
+    public static void precomputeLayouts(final TextDisplayable displayable, final GlobalThemeStore themeStore, final double width, final double height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        LAYOUT_EXECUTOR.submit(() -> {
+            final long startTime = System.currentTimeMillis();
+            try {
+                LyricDrawer drawer = new LyricDrawer();
+                drawer.setLayoutSize(width, height);
+                drawer.curDisplayable = displayable;
+                TextSection[] sections = displayable.getSections();
+                for (int i = 0; i < sections.length; i++) {
+                    ThemeDTO sectionTheme = themeStore.getTheme(displayable, sections[i]);
+                    drawer.theme = sectionTheme == null ? ThemeDTO.DEFAULT_THEME : sectionTheme;
+                    drawer.capitaliseFirst = sections[i].shouldCapitaliseFirst();
+                    double uniformFontSize = drawer.getUniformFontSize(displayable);
+                    String[] translationArr = null;
+                    if (displayable instanceof SongDisplayable) {
+                        String translationText = ((SongDisplayable) displayable).getCurrentTranslationSection(i);
+                        if (translationText != null) {
+                            translationArr = translationText.split("\n");
+                        }
+                    }
+                    drawer.setLayoutText(sections[i].getText(false, false), translationArr, sections[i].getSmallText());
+                    drawer.getLayout(uniformFontSize, displayable instanceof BiblePassage);
+                }
+                LOGGER.log(Level.FINE, "Laid out {0} sections of {1} in {2}ms", new Object[]{sections.length, displayable.getPreviewText(), System.currentTimeMillis() - startTime});
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Couldn't lay out " + displayable.getPreviewText(), ex);
+            }
+        });
     }
 
     /**
@@ -533,8 +692,8 @@ public class LyricDrawer extends WordDrawer {
             return -1;
         }
         
-        int width = (int)(getCanvas().getWidth() * QueleaProperties.get().getLyricWidthBounds());
-        int height = (int)(getCanvas().getHeight() * QueleaProperties.get().getLyricHeightBounds());
+        int width = (int)(layoutWidth * QueleaProperties.get().getLyricWidthBounds());
+        int height = (int)(layoutHeight * QueleaProperties.get().getLyricHeightBounds());
         
         if (displayable instanceof BiblePassage) {
             height *= 1-QueleaProperties.get().getSmallBibleTextSize();
@@ -587,6 +746,7 @@ public class LyricDrawer extends WordDrawer {
     @Override
     public void setText(TextDisplayable displayable, int index) {
         boolean fade = curDisplayable != displayable;
+        setLayoutSize(getCanvas().getWidth(), getCanvas().getHeight());
         double uniformFontSize = getUniformFontSize(displayable);
         curDisplayable = displayable;
         String[] bigText;
@@ -617,6 +777,11 @@ public class LyricDrawer extends WordDrawer {
      */
     @Override
     public void setText(String[] text, String[] translations, String[] smallText, boolean fade, double fontSize) {
+        setLayoutText(text, translations, smallText);
+        draw(curDisplayable, fontSize);
+    }
+
+    private void setLayoutText(String[] text, String[] translations, String[] smallText) {
         if (text == null) {
             text = new String[0];
         }
@@ -629,7 +794,6 @@ public class LyricDrawer extends WordDrawer {
         this.text = Arrays.copyOf(text, text.length);
         this.translations = Arrays.copyOf(translations, translations.length);
         this.smallText = Arrays.copyOf(smallText, smallText.length);
-        draw(curDisplayable, fontSize);
     }
 
     /**
@@ -648,7 +812,7 @@ public class LyricDrawer extends WordDrawer {
     }
 
     public void draw(Displayable displayable, double fontSize) {
-        drawText(fontSize, displayable instanceof BiblePassage);
+        drawTextTimed(fontSize, displayable instanceof BiblePassage);
         if (getCanvas().getCanvasBackground() instanceof ImageView) {
             ImageView imgBackground = (ImageView) getCanvas().getCanvasBackground();
             imgBackground.setFitHeight(getCanvas().getHeight());
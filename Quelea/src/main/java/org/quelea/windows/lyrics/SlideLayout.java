@@ -0,0 +1,121 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.lyrics;
+
+import java.util.Collections;
+import java.util.List;
+import javafx.scene.text.Font;
+import org.quelea.services.utils.LyricLine;
+
+/**
+ * The worked out layout of a single slide of text - the wrapped lines, the
+ * fonts picked to fit them and where each line goes. Working this out is the
+ * expensive part of drawing lyrics, so layouts are immutable and can be
+ * computed in the background and shared between canvases of the same size.
+ * <p/>
+ * @author Michael
+ */
+final class SlideLayout {
+
+    private final List<LyricLine> lines;
+    private final double[] lineX;
+    private final double[] lineY;
+    private final String[] smallLines;
+    private final double[] smallX;
+    private final double[] smallY;
+    private final Font font;
+    private final Font translateFont;
+    private final Font smallFont;
+    private final double lineHeight;
+    private final double smallLineHeight;
+
+    SlideLayout(List<LyricLine> lines, double[] lineX, double[] lineY,
+            String[] smallLines, double[] smallX, double[] smallY,
+            Font font, Font translateFont, Font smallFont,
+            double lineHeight, double smallLineHeight) {
+        this.lines = Collections.unmodifiableList(lines);
+        this.lineX = lineX;
+        this.lineY = lineY;
+        this.smallLines = smallLines;
+        this.smallX = smallX;
+        this.smallY = smallY;
+        this.font = font;
+        this.translateFont = translateFont;
+        this.smallFont = smallFont;
+        this.lineHeight = lineHeight;
+        this.smallLineHeight = smallLineHeight;
+    }
+
+    List<LyricLine> getLines() {
+        return lines;
+    }
+
+    double getLineX(int index) {
+        return lineX[index];
+    }
+
+    double getLineY(int index) {
+        return lineY[index];
+    }
+
+    int getSmallLineCount() {
+        return smallLines.length;
+    }
+
+    String getSmallLine(int index) {
+        return smallLines[index];
+    }
+
+    double getSmallX(int index) {
+        return smallX[index];
+    }
+
+    double getSmallY(int index) {
+        return smallY[index];
+    }
+
+    Font getFont() {
+        return font;
+    }
+
+    Font getTranslateFont() {
+        return translateFont;
+    }
+
+    Font getSmallFont() {
+        return smallFont;
+    }
+
+    /**
+     * Get the height of a line in the main font, used to scale the shadow.
+     * <p/>
+     * @return the line height of the main font.
+     */
+    double getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Get the height of a line in the small font, used to scale the shadow.
+     * <p/>
+     * @return the line height of the small font.
+     */
+    double getSmallLineHeight() {
+        return smallLineHeight;
+    }
+}
@@ -17,18 +17,13 @@
  */
 package org.quelea.windows.main;
 
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.HashSet;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.event.EventHandler;
 import javafx.scene.SnapshotParameters;
 import javafx.scene.control.Label;
@@ -47,6 +42,7 @@ import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
 import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
 import javafx.stage.Modality;
@@ -68,6 +64,7 @@ import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.actionhandlers.AddBibleVerseHandler;
 import org.quelea.windows.multimedia.VLCWindow;
 import org.quelea.windows.presentation.PowerPointHandler;
+import org.quelea.windows.web.WebPreviewUpdater;
 
 /**
  * The panel displaying the live lyrics selection - changes made on this panel
@@ -90,7 +87,7 @@ public class LivePanel extends LivePreviewPanel {
     private final ToolBar header;
     private Displayable oldD;
     private WritableImage webPreviewImage;
-    private ScheduledExecutorService updateWebPreview;
+    private WebPreviewUpdater webPreviewUpdater;
     private Dialog focusDialog;
 
     /**
@@ -275,6 +272,14 @@ public class LivePanel extends LivePreviewPanel {
             }
         });
         //header.getItems().add(hide);
+        //Showing or hiding the content moves the web view between the projector and the web panel
+        for (ToggleButton toggle : new ToggleButton[]{logo, black, clear, hide}) {
+            toggle.selectedProperty().addListener((observable, oldVal, newVal) -> {
+                if (webPreviewUpdater != null) {
+                    webPreviewUpdater.requestUpdate();
+                }
+            });
+        }
         showExtraToolbarOptions(QueleaProperties.get().getShowExtraLivePanelToolbarOptions());
         setTop(header);
         setOnKeyTyped(new EventHandler<KeyEvent>() {
@@ -449,26 +454,19 @@ public class LivePanel extends LivePreviewPanel {
                 clear.setSelected(false);
             }
         }
-        if (d instanceof WebDisplayable) {
-            updateWebPreview = Executors.newSingleThreadScheduledExecutor();
-            updateWebPreview.scheduleAtFixedRate(new Runnable() {
-                @Override
-                public void run() {
-                    Platform.runLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (d != null && d instanceof WebDisplayable) {
-                                getWebPanel().setLoading();
-                                getWebPanel().getImagePreview().setImage(geWebPreviewImage());
-                            }
-                        }
-                    });
-                }
-            }, 0, QueleaProperties.get().getWebDisplayableRefreshRate(), TimeUnit.MILLISECONDS);
+        if (webPreviewUpdater != null) {
+            webPreviewUpdater.stop();
+            webPreviewUpdater = null;
         }
         if (oldD instanceof WebDisplayable) {
             ((WebDisplayable) oldD).dispose();
-            updateWebPreview.shutdown();
+        }
+        if (d instanceof WebDisplayable) {
+            webPreviewUpdater = new WebPreviewUpdater((WebDisplayable) d, QueleaProperties.get().getWebDisplayableRefreshRate(), () -> {
+                getWebPanel().setLoading();
+                getWebPanel().getImagePreview().setImage(getWebPreviewImage());
+            });
+            webPreviewUpdater.start();
         }
         HashSet<DisplayCanvas> canvases = new HashSet<>();
         canvases.addAll(getCanvases());
@@ -601,24 +599,31 @@ public class LivePanel extends LivePreviewPanel {
 
     /**
      * Get a preview image of the web view or move it to the main panel if it's
-     * not visible.
+     * not visible. The snapshot is taken at the size it's shown in the
+     * preview rather than the size of the projector, and into the same image
+     * each time unless that size changes.
      *
      * @return a screenshot image of the web view
      */
-    private Image geWebPreviewImage() {
+    private Image getWebPreviewImage() {
         DisplayCanvas canvas = QueleaApp.get().getProjectionWindow().getCanvas();
         if (QueleaApp.get().getProjectionWindow().isShowing() && isContentShowing()) {
-            Double d = canvas.getBoundsInLocal().getHeight();
-            int h = d.intValue();
-            Double d2 = canvas.getBoundsInLocal().getWidth();
-            ;
-            int w = d2.intValue();
-            webPreviewImage = new WritableImage(w, h);
+            double canvasWidth = canvas.getBoundsInLocal().getWidth();
+            double canvasHeight = canvas.getBoundsInLocal().getHeight();
+            ImageView preview = getWebPanel().getImagePreview();
+            double scale = 1;
+            if (preview.getFitWidth() > 0 && preview.getFitHeight() > 0) {
+                scale = Math.min(1, Math.min(preview.getFitWidth() / canvasWidth, preview.getFitHeight() / canvasHeight));
+            }
+            int w = Math.max(1, (int) (canvasWidth * scale));
+            int h = Math.max(1, (int) (canvasHeight * scale));
+            if (webPreviewImage == null || (int) webPreviewImage.getWidth() != w || (int) webPreviewImage.getHeight() != h) {
+                webPreviewImage = new WritableImage(w, h);
+            }
             SnapshotParameters params = new SnapshotParameters();
             params.setFill(Color.TRANSPARENT);
+            params.setTransform(Transform.scale(scale, scale));
             canvas.snapshot(params, webPreviewImage);
-            BufferedImage bi = SwingFXUtils.fromFXImage((WritableImage) webPreviewImage, null);
-            SwingFXUtils.toFXImage(bi, webPreviewImage);
             WebView wv = getWebPanel().removeWebView();
             if (wv != null && !canvas.getChildren().contains(wv)) {
                 canvas.getChildren().add(wv);
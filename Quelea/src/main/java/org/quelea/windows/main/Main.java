@@ -32,7 +32,7 @@ import javafx.stage.Stage;
 import javax.imageio.ImageIO;
 import org.javafx.dialog.Dialog;
 import org.quelea.data.bible.BibleManager;
-import org.quelea.data.db.SongManager;
+import org.quelea.data.db.HibernateUtil;
 import org.quelea.data.powerpoint.OOUtils;
 import org.quelea.server.AutoDetectServer;
 import org.quelea.server.MobileLyricsServer;
@@ -232,12 +232,17 @@ public final class Main extends Application {
                         LOGGER.log(Level.INFO, "Loading bibles done");
                     });
 
-                    if (SongManager.get() == null) {
-                        Platform.runLater(() -> {
-                            Dialog.showAndWaitError(LabelGrabber.INSTANCE.getLabel("already.running.title"), LabelGrabber.INSTANCE.getLabel("already.running.error"));
-                            System.exit(1);
-                        });
-                    }
+                    //Opening the database is slow, so the main window doesn't wait for it
+                    Thread databaseThread = new Thread(() -> {
+                        if (!HibernateUtil.init()) {
+                            Platform.runLater(() -> {
+                                Dialog.showAndWaitError(LabelGrabber.INSTANCE.getLabel("already.running.title"), LabelGrabber.INSTANCE.getLabel("already.running.error"));
+                                System.exit(1);
+                            });
+                        }
+                    }, "database-init");
+                    databaseThread.setDaemon(true);
+                    databaseThread.start();
                     OOUtils.attemptInit();
                     Platform.runLater(() -> {
                         mainWindow = new MainWindow(true, VLC_OK);
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.DoublePredicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.scene.image.ImageView;
@@ -45,6 +46,9 @@ public abstract class WordDrawer extends DisplayableDrawer {
 
     protected Map<DisplayCanvas, Boolean> lastClearedState;
     protected static final Logger LOGGER = LoggerUtils.getLogger();
+    private static final double FONT_SIZE_STEP = 0.5;
+    private long fontFitNanos;
+    private long lastFontFitNanos;
 
     public abstract void setTheme(ThemeDTO theme);
 
@@ -73,15 +77,30 @@ public abstract class WordDrawer extends DisplayableDrawer {
         String[] words = lineToWrap.split(" ");
         StringBuilder lineBuilder = new StringBuilder();
         List<LyricLine> lines = new ArrayList<>();
+        //If widths add up, track the line width as we go rather than re-measuring the whole line for every word
+        boolean additive = metrics.isAdditive(lineToWrap);
+        double spaceWidth = metrics.computeStringWidth(" ");
+        double lineWidth = 0;
         for (int i = 0; i < words.length; i++) {
             String word = words[i];
-            String potentialStr = lineBuilder.toString() + word;
-            if (metrics.computeStringWidth(potentialStr.replace("<sup>", "").replace("</sup>", "")) > width) {
+            double wordWidth = 0;
+            double potentialWidth;
+            if (additive) {
+                wordWidth = metrics.computeStringWidth(word.replace("<sup>", "").replace("</sup>", ""));
+                potentialWidth = lineWidth + wordWidth;
+            }
+            else {
+                String potentialStr = lineBuilder.toString() + word;
+                potentialWidth = metrics.computeStringWidth(potentialStr.replace("<sup>", "").replace("</sup>", ""));
+            }
+            if (potentialWidth > width) {
                 lines.add(new LyricLine(lineBuilder.toString()));
                 lineBuilder = new StringBuilder(word + " ");
+                lineWidth = wordWidth + spaceWidth;
             }
             else {
                 lineBuilder.append(word).append(" ");
+                lineWidth += wordWidth + spaceWidth;
             }
         }
         lines.add(new LyricLine(lineBuilder.toString()));
@@ -130,26 +149,70 @@ public abstract class WordDrawer extends DisplayableDrawer {
      * width and height provided.
      */
     protected double pickFontSize(Font font, List<LyricLine> text, double width, double height) {
-        FXFontMetrics metrics = new FXFontMetrics(font);
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * text.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * text.size();
+        final long startTime = System.nanoTime();
+        try {
+            return bisectFontSize(font.getSize(), size -> {
+                Font sizedFont = size == font.getSize() ? font : new Font(font.getName(), size);
+                FXFontMetrics metrics = new FXFontMetrics(sizedFont);
+                return (metrics.getLineHeight() + getLineSpacing()) * text.size() <= height
+                        && longestLine(sizedFont, text) <= width;
+            });
+        } finally {
+            fontFitNanos += System.nanoTime() - startTime;
         }
+    }
 
-        double totalWidth = longestLine(font, text);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
+    /**
+     * Find the largest font size that fits, stepping down from the given
+     * maximum size in half point increments. Rather than trying every size in
+     * turn, this bisects over the steps, so only a handful of sizes need to be
+     * measured. Relies on smaller font sizes always taking up less space.
+     * <p>
+     * @param maxSize the largest font size to try.
+     * @param fits determines whether a given font size fits.
+     * @return the largest font size that fits, or 1 if none do.
+     */
+    private static double bisectFontSize(double maxSize, DoublePredicate fits) {
+        if (fits.test(maxSize)) {
+            return maxSize;
+        }
+        int tooLarge = 0;
+        int fitting = (int) ((maxSize - 1) / FONT_SIZE_STEP);
+        if (fitting < 1 || !fits.test(maxSize - fitting * FONT_SIZE_STEP)) {
+            return 1;
+        }
+        while (fitting - tooLarge > 1) {
+            int mid = (tooLarge + fitting) >>> 1;
+            if (fits.test(maxSize - mid * FONT_SIZE_STEP)) {
+                fitting = mid;
+            } else {
+                tooLarge = mid;
             }
-            totalWidth = longestLine(font, text);
         }
-        return font.getSize();
+        return maxSize - fitting * FONT_SIZE_STEP;
+    }
+
+    /**
+     * Get how long was spent picking font sizes for the last piece of text
+     * that was drawn, including working out the uniform font size if needed.
+     * <p>
+     * @return the time spent fitting text, in milliseconds.
+     */
+    public double getLastFontFitTime() {
+        return lastFontFitNanos / 1000000.0;
+    }
+
+    /**
+     * Draw the text, recording how long was spent fitting it.
+     * <p>
+     * @param defaultFontSize the font size to use, or -1 to pick one.
+     * @param dumbWrap true if the text should be wrapped to fit.
+     */
+    protected void drawTextTimed(double defaultFontSize, boolean dumbWrap) {
+        drawText(defaultFontSize, dumbWrap);
+        lastFontFitNanos = fontFitNanos;
+        fontFitNanos = 0;
+        LOGGER.log(Level.FINE, "Fitting text took {0}ms", getLastFontFitTime());
     }
 
     /**
@@ -160,8 +223,19 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
 
     protected double getLineSpacing() {
+        return getLineSpacing(getCanvas().getHeight());
+    }
+
+    /**
+     * Get the additional spacing between lines on a canvas of the given
+     * height.
+     * <p>
+     * @param canvasHeight the height of the canvas.
+     * @return the additional line spacing.
+     */
+    protected static double getLineSpacing(double canvasHeight) {
         double space = QueleaProperties.get().getAdditionalLineSpacing();
-        double factor = getCanvas().getHeight() / 1000.0;
+        double factor = canvasHeight / 1000.0;
         return space * factor;
     }
 
@@ -259,7 +333,7 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
 
     protected void draw(Displayable displayable, double fontSize) {
-        drawText(fontSize, displayable instanceof BiblePassage);
+        drawTextTimed(fontSize, displayable instanceof BiblePassage);
         if (getCanvas().getCanvasBackground() instanceof ImageView) {
             ImageView imgBackground = (ImageView) getCanvas().getCanvasBackground();
             imgBackground.setFitHeight(getCanvas().getHeight());
@@ -270,7 +344,7 @@ public abstract class WordDrawer extends DisplayableDrawer {
     }
 
     protected double pickSmallFontSize(Font font, String[] text, double width, double height) {
-        FXFontMetrics metrics = new FXFontMetrics(font);
+        final long startTime = System.nanoTime();
         ArrayList<String> al = new ArrayList<>();
         for (String te : text) {
             if (al.contains("\n")) {
@@ -280,27 +354,16 @@ public abstract class WordDrawer extends DisplayableDrawer {
                 al.add(te);
             }
         }
-        double totalHeight = ((metrics.getLineHeight() + getLineSpacing()) * al.size());
-        while (totalHeight > height) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalHeight = (metrics.getLineHeight() + getLineSpacing()) * al.size();
-        }
-
-        String longestLine = longestLine(font, al);
-        double totalWidth = metrics.computeStringWidth(longestLine);
-        while (totalWidth > width) {
-            font = new Font(font.getName(), font.getSize() - 0.5);
-            if (font.getSize() < 1) {
-                return 1;
-            }
-            metrics = new FXFontMetrics(font);
-            totalWidth = metrics.computeStringWidth(longestLine);
+        final String longestLine = longestLine(font, al);
+        try {
+            return bisectFontSize(font.getSize(), size -> {
+                Font sizedFont = size == font.getSize() ? font : new Font(font.getName(), size);
+                FXFontMetrics metrics = new FXFontMetrics(sizedFont);
+                return (metrics.getLineHeight() + getLineSpacing()) * al.size() <= height
+                        && (longestLine == null || metrics.computeStringWidth(longestLine) <= width);
+            });
+        } finally {
+            fontFitNanos += System.nanoTime() - startTime;
         }
-
-        return font.getSize();
     }
 }
@@ -30,6 +30,7 @@ import org.javafx.dialog.Dialog;
 import org.quelea.data.SaveCallback;
 import org.quelea.data.Schedule;
 import org.quelea.data.ScheduleSaver;
+import org.quelea.data.db.SongManager;
 import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.PresentationDisplayable;
 import org.quelea.data.powerpoint.OOUtils;
@@ -129,6 +130,13 @@ public class ExitActionHandler implements EventHandler<ActionEvent> {
             }
         }
 
+        if (SongManager.get() != null) {
+            LOGGER.log(Level.INFO, "Writing song library snapshot");
+            SongManager.get().writeSnapshot();
+            LOGGER.log(Level.INFO, "Closing song search index");
+            SongManager.get().getIndex().close();
+        }
+
         LOGGER.log(Level.INFO, "Try to close OOfice if opened");
         OOUtils.closeOOApp();
         if (QueleaApp.get().getMobileLyricsServer() != null) {
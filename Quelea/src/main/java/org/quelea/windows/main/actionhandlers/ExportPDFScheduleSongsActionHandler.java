@@ -23,24 +23,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Level;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.stage.FileChooser;
 import org.javafx.dialog.Dialog;
 import org.quelea.data.Schedule;
-import org.quelea.data.displayable.Displayable;
 import org.quelea.data.displayable.SongDisplayable;
 import org.quelea.services.importexport.PDFExporter;
 import static org.quelea.services.importexport.PDFExporter.LOGGER;
 import org.quelea.services.languages.LabelGrabber;
 import org.quelea.services.utils.FileFilters;
 import org.quelea.services.utils.QueleaProperties;
-import org.quelea.services.utils.Utils;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.StatusPanel;
 
@@ -52,7 +48,6 @@ import org.quelea.windows.main.StatusPanel;
 public class ExportPDFScheduleSongsActionHandler implements EventHandler<ActionEvent> {
 
     private boolean printChords;
-    private final HashSet<String> names = new HashSet<>();
 
     @Override
     public void handle(ActionEvent t) {
@@ -81,29 +76,13 @@ public class ExportPDFScheduleSongsActionHandler implements EventHandler<ActionE
                     printChords = false;
                 }
             }).build().showAndWait();
-            names.clear();
             final StatusPanel panel = QueleaApp.get().getMainWindow().getMainPanel().getStatusPanelGroup().addPanel(LabelGrabber.INSTANCE.getLabel("exporting.label") + "...");
             final List<SongDisplayable> songDisplayablesThreadSafe = getSongs(schedule);
             final File threadSafeFile = new File(file.getAbsolutePath());
             new Thread() {
                 public void run() {
-                    final HashSet<String> names = new HashSet<>();
                     try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(threadSafeFile), Charset.forName("UTF-8"))) {
-                        for (int i = 0; i < songDisplayablesThreadSafe.size(); i++) {
-                            Displayable d = songDisplayablesThreadSafe.get(i);
-                            if (!(d instanceof SongDisplayable)) {
-                                continue;
-                            }
-                            SongDisplayable song = (SongDisplayable) d;
-                            String name = PDFExporter.sanitise(song.getTitle()) + ".pdf";
-                            while (names.contains(name)) {
-                                name = Utils.incrementExtension(name, "pdf");
-                            }
-                            names.add(name);
-                            out.putNextEntry(new ZipEntry(name));
-                            out.write(PDFExporter.getPDF(song, printChords));
-                            panel.setProgress((double) i / songDisplayablesThreadSafe.size());
-                        }
+                        PDFExporter.writeSongs(out, songDisplayablesThreadSafe, printChords, panel);
                         panel.done();
                     } catch (IOException ex) {
                         LOGGER.log(Level.WARNING, "Couldn't export PDF songs", ex);
@@ -21,13 +21,17 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javafx.application.Platform;
 import javafx.beans.property.ObjectProperty;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
+import javafx.geometry.Dimension2D;
 import javafx.geometry.Pos;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
@@ -62,6 +66,8 @@ import org.quelea.services.utils.Utils;
 import org.quelea.windows.library.Constraint;
 import org.quelea.windows.library.DisplayableListCell;
 import org.quelea.windows.lyrics.LyricDrawer;
+import org.quelea.windows.main.DisplayCanvas;
+import org.quelea.windows.main.MainWindow;
 import org.quelea.windows.main.QueleaApp;
 import org.quelea.windows.main.WordDrawer;
 import org.quelea.windows.main.actionhandlers.AddPdfActionHandler;
@@ -102,6 +108,15 @@ public class ScheduleList extends StackPane {
         listView = new ListView<>();
         listView.getSelectionModel().setSelectionMode(SelectionMode.SINGLE);
         getChildren().add(listView);
+        listView.getItems().addListener((ListChangeListener.Change<? extends Displayable> change) -> {
+            while (change.next()) {
+                for (Displayable displayable : change.getAddedSubList()) {
+                    if (displayable instanceof TextDisplayable) {
+                        precomputeLayouts((TextDisplayable) displayable);
+                    }
+                }
+            }
+        });
         markerRect = new Rectangle(200, 3, Color.GRAY);
         markerRect.setVisible(false);
         getChildren().add(markerRect);
@@ -261,6 +276,32 @@ public class ScheduleList extends StackPane {
         });
     }
 
+    /**
+     * Lay out the sections of a text displayable in the background for the
+     * current size of each of the live and preview canvases, so they can be
+     * drawn straight away when the displayable is shown.
+     * <p/>
+     * @param displayable the displayable to lay out.
+     */
+    private void precomputeLayouts(TextDisplayable displayable) {
+        MainWindow mainWindow = QueleaApp.get().getMainWindow();
+        if (mainWindow == null || mainWindow.getMainPanel() == null) {
+            return;
+        }
+        Set<DisplayCanvas> canvases = new HashSet<>();
+        canvases.addAll(mainWindow.getMainPanel().getLivePanel().getLyricsPanel().getCanvases());
+        canvases.addAll(mainWindow.getMainPanel().getPreviewPanel().getLyricsPanel().getCanvases());
+        Set<Dimension2D> sizes = new HashSet<>();
+        for (DisplayCanvas canvas : canvases) {
+            if (!canvas.isStageView()) {
+                sizes.add(new Dimension2D(canvas.getWidth(), canvas.getHeight()));
+            }
+        }
+        for (Dimension2D size : sizes) {
+            LyricDrawer.precomputeLayouts(displayable, mainWindow.getGlobalThemeStore(), size.getWidth(), size.getHeight());
+        }
+    }
+
     public void add(Displayable displayable) {
         if (!Platform.isFxApplicationThread()) {
             LOGGER.log(Level.WARNING, "Not on the platform thread!", new RuntimeException("DEBUG EX"));
@@ -19,6 +19,7 @@ package org.quelea.windows.main.widgets;
 
 import java.util.ArrayList;
 import java.util.List;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -134,7 +135,8 @@ public class TestPaneDialog extends Stage {
     }
 
     private ImageView getTestView(final String uri, final boolean preserveAspect) {
-        final ImageView iv = new ImageView(ImageManager.INSTANCE.getImage(uri, 385, 216, false));
+        final ImageView iv = new ImageView();
+        ImageManager.INSTANCE.getImageAsync(uri, 385, 216, false).thenAccept(image -> Platform.runLater(() -> iv.setImage(image)));
         iv.setOnMouseClicked(new EventHandler<MouseEvent>() {
 
             @Override
@@ -17,6 +17,7 @@
  */
 package org.quelea.windows.pdf;
 
+import java.util.concurrent.CompletableFuture;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
@@ -158,8 +159,32 @@ public class PdfPanel extends AbstractPanel {
         });
     }
 
-    private void drawSlide(PdfSlide newSlide, DisplayCanvas canvas) {
-        Image displayImage = newSlide.getImage();
+    /**
+     * Draw a slide on a canvas. If the full size page hasn't been rendered
+     * yet its thumbnail is shown until it has, rather than holding up the FX
+     * thread.
+     */
+    private void drawSlide(final PdfSlide newSlide, final DisplayCanvas canvas) {
+        CompletableFuture<Image> image = newSlide.getImageAsync();
+        if (image.isDone()) {
+            drawImage(image.join(), canvas);
+            return;
+        }
+        CompletableFuture<Image> thumbnail = newSlide.getThumbnailAsync();
+        if (thumbnail.isDone() && !thumbnail.isCompletedExceptionally()) {
+            drawImage(thumbnail.join(), canvas);
+        }
+        image.thenAccept(fullImage -> Platform.runLater(() -> {
+            if (currentSlide == newSlide) {
+                drawImage(fullImage, canvas);
+            }
+        }));
+    }
+
+    private void drawImage(Image displayImage, DisplayCanvas canvas) {
+        if (displayImage == null) {
+            return;
+        }
         ImageDisplayable imageDisplayable = new ImageDisplayable(displayImage);
         drawer.setCanvas(canvas);
         drawer.draw(imageDisplayable);
@@ -192,6 +217,7 @@ public class PdfPanel extends AbstractPanel {
         }
         PdfSlide[] slides = displayable.getPresentation().getSlides();
         pdfPreview.setSlides(slides);
+        displayable.getPresentation().prefetch(Math.max(0, index - 1));
         Platform.runLater(new Runnable() {
             @Override
             public void run() {
@@ -17,6 +17,7 @@
  */
 package org.quelea.windows.presentation;
 
+import java.util.concurrent.CompletableFuture;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
@@ -247,8 +248,32 @@ public class PresentationPanel extends AbstractPanel {
                 );
     }
 
-    private void drawSlide(PresentationSlide newSlide, DisplayCanvas canvas) {
-        Image displayImage = newSlide.getImage();
+    /**
+     * Draw a slide on a canvas. If the full size slide hasn't been rendered
+     * yet its thumbnail is shown until it has, rather than holding up the FX
+     * thread.
+     */
+    private void drawSlide(final PresentationSlide newSlide, final DisplayCanvas canvas) {
+        CompletableFuture<Image> image = newSlide.getImageAsync();
+        if (image.isDone()) {
+            drawImage(image.join(), canvas);
+            return;
+        }
+        CompletableFuture<Image> thumbnail = newSlide.getThumbnailAsync();
+        if (thumbnail.isDone() && !thumbnail.isCompletedExceptionally()) {
+            drawImage(thumbnail.join(), canvas);
+        }
+        image.thenAccept(fullImage -> Platform.runLater(() -> {
+            if (currentSlide == newSlide) {
+                drawImage(fullImage, canvas);
+            }
+        }));
+    }
+
+    private void drawImage(Image displayImage, DisplayCanvas canvas) {
+        if (displayImage == null) {
+            return;
+        }
         ImageDisplayable imageDisplayable = new ImageDisplayable(displayImage);
         drawer.setCanvas(canvas);
         drawer.draw(imageDisplayable);
@@ -297,6 +322,7 @@ public class PresentationPanel extends AbstractPanel {
         }
         PresentationSlide[] slides = displayable.getPresentation().getSlides();
         presentationPreview.setSlides(slides);
+        displayable.getPresentation().prefetch(Math.max(0, index - 1));
         Platform.runLater(new Runnable() {
             @Override
             public void run() {
@@ -18,6 +18,7 @@
  */
 package org.quelea.windows.presentation;
 
+import javafx.application.Platform;
 import javafx.scene.control.Label;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
@@ -42,7 +43,8 @@ public class SlideThumbnail extends BorderPane {
     public SlideThumbnail(PresentationSlide slide, int num) {
         this.num = num;
         this.slide = slide;
-        image = new ImageView(slide.getImage());
+        image = new ImageView();
+        slide.getThumbnailAsync().thenAccept(thumbnail -> Platform.runLater(() -> image.setImage(thumbnail)));
         image.setFitWidth(QueleaProperties.get().getThumbnailSize());
         image.setPreserveRatio(true);
         image.setSmooth(true);
@@ -0,0 +1,112 @@
+/*
+ * This file is part of Quelea, free projection software for churches.
+ *
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.quelea.windows.web;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import org.quelea.data.displayable.WebDisplayable;
+
+/**
+ * Keeps the preview of a live web displayable up to date. Rather than
+ * polling, the preview is only updated when the page tells us it's changed,
+ * and no more often than a given interval however often that is.
+ * <p/>
+ * @author Michael
+ */
+public class WebPreviewUpdater {
+
+    private final WebDisplayable displayable;
+    private final long minInterval;
+    private final Runnable update;
+    private final Runnable listener;
+    private final PauseTransition pause;
+    private long lastUpdate;
+    private boolean scheduled;
+    private boolean stopped;
+
+    /**
+     * Create a new preview updater.
+     * <p/>
+     * @param displayable the web displayable to watch.
+     * @param minInterval the minimum time between updates, in milliseconds.
+     * @param update the update to run on the FX thread when the page has
+     * changed.
+     */
+    public WebPreviewUpdater(WebDisplayable displayable, long minInterval, Runnable update) {
+        this.displayable = displayable;
+        this.minInterval = minInterval;
+        this.update = update;
+        this.listener = this::requestUpdate;
+        pause = new PauseTransition();
+        pause.setOnFinished(e -> runUpdate());
+    }
+
+    /**
+     * Start watching the page, and update the preview straight away.
+     */
+    public void start() {
+        displayable.addRepaintListener(listener);
+        requestUpdate();
+    }
+
+    /**
+     * Stop watching the page. No more updates will be run once this has been
+     * called.
+     */
+    public void stop() {
+        displayable.removeRepaintListener(listener);
+        if (Platform.isFxApplicationThread()) {
+            stopped = true;
+            pause.stop();
+        } else {
+            Platform.runLater(this::stop);
+        }
+    }
+
+    /**
+     * Ask for the preview to be updated. If an update is already waiting this
+     * does nothing, since that update will pick up the change.
+     */
+    public void requestUpdate() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::requestUpdate);
+            return;
+        }
+        if (stopped || scheduled) {
+            return;
+        }
+        scheduled = true;
+        long wait = lastUpdate + minInterval - System.currentTimeMillis();
+        if (wait > 0) {
+            pause.setDuration(Duration.millis(wait));
+            pause.playFromStart();
+        } else {
+            Platform.runLater(this::runUpdate);
+        }
+    }
+
+    private void runUpdate() {
+        scheduled = false;
+        if (stopped) {
+            return;
+        }
+        lastUpdate = System.currentTimeMillis();
+        update.run();
+    }
+}